@@ -0,0 +1,172 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.BitSet;
+
+// Draws the bars straight into a cached raster. With more elements than pixel
+// columns each column shows the min/max of its bucket; only columns marked
+// dirty since the last frame are redrawn.
+final class BarRenderer {
+    private static final int BACKGROUND = 0xEEEEEE;
+    private static final int BAR = 0xFF69B4;
+    private static final int[] WORKER_COLORS = { 0x4E79A7, 0xF28E2B, 0x59A14F, 0xB07AA1, 0x76B7B2, 0xEDC948,
+            0x9C755F, 0xBAB0AC };
+    private static final int CURRENT = 0xFF0000;
+    private static final int NEXT = 0x0000FF;
+    private static final Font LABEL_FONT = new Font("Arial", Font.BOLD, 20);
+    private static final int LABEL_SPACE = 30;
+
+    private BufferedImage image;
+    private int[] pixels;
+    private int width, height;
+    private int[] source;
+    private int[] owners;
+    private int length;
+    private int scaleMax;
+    private int currentIndex = -1, nextIndex = -1;
+    private final BitSet dirty = new BitSet();
+    private boolean fullRedraw = true;
+
+    public void markDirty(int index) {
+        if (image == null || length == 0 || index < 0 || index >= length) {
+            return;
+        }
+        int from = (int) ((long) index * width / length);
+        int to = (int) ((((long) index + 1) * width + length - 1) / length);
+        dirty.set(from, Math.min(width, to));
+    }
+
+    public void markAllDirty() {
+        fullRedraw = true;
+    }
+
+    // owners, if not null, holds the worker that last wrote each index plus one.
+    public void paint(Graphics g, int[] array, int[] owners, int current, int next, int w, int h) {
+        if (w <= 0 || h <= 0) {
+            return;
+        }
+        if (image == null || w != width || h != height || array != source || array.length != length) {
+            width = w;
+            height = h;
+            image = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+            pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+            source = array;
+            length = array.length;
+            fullRedraw = true;
+        }
+        if (owners != this.owners) {
+            this.owners = owners;
+            fullRedraw = true;
+        }
+        if (fullRedraw) {
+            int max = 0;
+            for (int value : array) {
+                max = Math.max(max, value);
+            }
+            scaleMax = max;
+        }
+        if (current != currentIndex || next != nextIndex) {
+            markDirty(currentIndex);
+            markDirty(nextIndex);
+            currentIndex = current;
+            nextIndex = next;
+            markDirty(currentIndex);
+            markDirty(nextIndex);
+        }
+
+        boolean labels = length > 0 && width / length >= labelWidth(g);
+        int barSpace = labels ? height - LABEL_SPACE : height;
+        if (fullRedraw) {
+            for (int x = 0; x < width; x++) {
+                drawColumn(x, barSpace);
+            }
+            dirty.clear();
+            fullRedraw = false;
+        } else {
+            for (int x = dirty.nextSetBit(0); x >= 0 && x < width; x = dirty.nextSetBit(x + 1)) {
+                drawColumn(x, barSpace);
+            }
+            dirty.clear();
+        }
+        g.drawImage(image, 0, 0, null);
+
+        if (labels) {
+            drawLabels(g, barSpace);
+        }
+    }
+
+    private int labelWidth(Graphics g) {
+        return g.getFontMetrics(LABEL_FONT).stringWidth(Integer.toString(scaleMax)) + 4;
+    }
+
+    private void drawColumn(int x, int barSpace) {
+        int color = BAR;
+        int min, max;
+        if (length == 0) {
+            min = max = 0;
+        } else {
+            int from = (int) ((long) x * length / width);
+            int to = Math.max(from + 1, (int) (((long) x + 1) * length / width));
+            if (owners != null && owners[from] > 0) {
+                color = WORKER_COLORS[(owners[from] - 1) % WORKER_COLORS.length];
+            }
+            int base = color;
+            min = max = source[from];
+            for (int i = from; i < to; i++) {
+                int value = source[i];
+                if (value < min) {
+                    min = value;
+                } else if (value > max) {
+                    max = value;
+                }
+                if (i == currentIndex) {
+                    color = CURRENT;
+                } else if (i == nextIndex && color == base) {
+                    color = NEXT;
+                }
+            }
+        }
+        int rangeColor = color == CURRENT || color == NEXT ? color : lighten(color);
+        int low = barHeight(min, barSpace);
+        int high = barHeight(max, barSpace);
+        int y = 0;
+        for (int row = height - high; y < row; y++) {
+            pixels[y * width + x] = BACKGROUND;
+        }
+        for (int row = height - low; y < row; y++) {
+            pixels[y * width + x] = rangeColor;
+        }
+        for (; y < height; y++) {
+            pixels[y * width + x] = color;
+        }
+    }
+
+    private static int lighten(int rgb) {
+        return ((rgb & 0xFEFEFE) >> 1) + 0x7F7F7F;
+    }
+
+    // Heights stay in pixels like the original bars unless they would not fit.
+    private int barHeight(int value, int barSpace) {
+        if (value <= 0) {
+            return 0;
+        }
+        if (scaleMax <= barSpace) {
+            return value;
+        }
+        return (int) ((long) value * barSpace / scaleMax);
+    }
+
+    private void drawLabels(Graphics g, int barSpace) {
+        g.setColor(Color.BLACK);
+        g.setFont(LABEL_FONT);
+        FontMetrics metrics = g.getFontMetrics();
+        for (int i = 0; i < length; i++) {
+            int x = (int) ((long) i * width / length);
+            int barWidth = (int) (((long) i + 1) * width / length) - x;
+            String value = Integer.toString(source[i]);
+            int textX = x + barWidth / 2 - metrics.stringWidth(value) / 2;
+            int textY = height - barHeight(source[i], barSpace) - 6;
+            g.drawString(value, textX, textY);
+        }
+    }
+}
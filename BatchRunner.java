@@ -0,0 +1,518 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+// Headless entry point: runs sorts or traversals without loading any Swing class and
+// writes one metrics record per run.
+//
+//   java BatchRunner --algorithms merge,quick --input gen:random:1000000[:seed]
+//   java BatchRunner --algorithms quick --input data.bin        (raw little-endian int32)
+//   java BatchRunner --algorithms merge --input data.txt        (whitespace separated ints)
+//   java BatchRunner --algorithms external --input data.bin [--memory-mb 64]   (sorts on disk)
+//   java BatchRunner --algorithms bfs,dfs --graph gen:random:1000000:5000000[:seed]
+//   java BatchRunner --algorithms bfs --graph edges.txt         (edge list, DIMACS .gr or binary .bin)
+//   java BatchRunner --algorithms parallel-bfs --graph ...      (per-level frontier sizes go to stderr)
+//   java BatchRunner --algorithms dijkstra,astar,bidijkstra --graph ...   (node 0 to the last node)
+//   options: [--repeat N] [--format csv|json] [--out file] [--trace-dir dir]
+//
+// Sort names are the keys of the sorts in SortRegistry, plus "external".
+//
+// For traversals "comparisons" counts neighbor scans and "writes" counts visited nodes;
+// for shortest paths they count relaxed edges and settled nodes. The external sort
+// streams .bin inputs from disk (other inputs are written to a temporary .bin first)
+// and reports each phase's MB/s to stderr.
+//
+// With --trace-dir every run is also written to dir/<algorithm>-<run>.trc as a seekable
+// trace file. Sorts stream their trace while they run, so traced timings include the
+// encoding; traversals are traced after the timed run from the order they visited. Generated graphs get
+// random positions, which give the default edge weights.
+public class BatchRunner {
+    private static final class Result {
+        String algorithm, input, status = "ok";
+        long size, elapsedNanos, comparisons, swaps, reads, writes, allocatedBytes, peakHeapBytes;
+    }
+
+    public static void main(String[] args) throws IOException {
+        String[] algorithms = null;
+        String input = null, graphInput = null, format = "csv", out = null;
+        int repeat = 1;
+        long memoryBytes = 64L << 20;
+        Path traceDir = null;
+        for (int i = 0; i < args.length; i += 2) {
+            String value = i + 1 < args.length ? args[i + 1] : "";
+            switch (args[i]) {
+                case "--algorithms":
+                    algorithms = value.split(",");
+                    break;
+                case "--input":
+                    input = value;
+                    break;
+                case "--graph":
+                    graphInput = value;
+                    break;
+                case "--repeat":
+                    repeat = Integer.parseInt(value);
+                    break;
+                case "--memory-mb":
+                    memoryBytes = Long.parseLong(value) << 20;
+                    break;
+                case "--trace-dir":
+                    traceDir = Paths.get(value);
+                    break;
+                case "--format":
+                    format = value;
+                    break;
+                case "--out":
+                    out = value;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        if (algorithms == null || (input == null) == (graphInput == null)) {
+            System.err.println("usage: java BatchRunner --algorithms a,b (--input spec | --graph spec)"
+                    + " [--repeat N] [--memory-mb N] [--format csv|json] [--out file] [--trace-dir dir]");
+            System.exit(2);
+        }
+
+        List<Result> results = new ArrayList<>();
+        if (input != null) {
+            // Only in-memory sorts load the input, so an external-only run never holds it in the heap.
+            int[] data = null;
+            int runs = 0;
+            for (String algorithm : algorithms) {
+                runs += "external".equals(algorithm) ? 0 : repeat;
+            }
+            for (String algorithm : algorithms) {
+                if ("external".equals(algorithm)) {
+                    for (int r = 0; r < repeat; r++) {
+                        results.add(runExternalSort(input, memoryBytes));
+                    }
+                    continue;
+                }
+                SortAlgorithm sort = SortRegistry.byKey(algorithm);
+                if (sort == null) {
+                    throw new IllegalArgumentException("Unknown sort: " + algorithm);
+                }
+                if (data == null) {
+                    data = readArray(input);
+                }
+                for (int r = 0; r < repeat; r++) {
+                    // The last run sorts the input in place so a single run needs no copy.
+                    int[] work = --runs == 0 ? data : data.clone();
+                    results.add(runSort(algorithm, input, sort, work, tracePath(traceDir, algorithm, r)));
+                }
+            }
+        } else {
+            Graph graph = readGraph(graphInput);
+            for (String algorithm : algorithms) {
+                for (int r = 0; r < repeat; r++) {
+                    results.add(runTraversal(algorithm, graphInput, graph, tracePath(traceDir, algorithm, r)));
+                }
+            }
+        }
+
+        try (PrintStream stream = out == null ? new PrintStream(System.out, false)
+                : new PrintStream(Files.newOutputStream(Paths.get(out)))) {
+            if ("json".equals(format)) {
+                writeJson(stream, results);
+            } else {
+                writeCsv(stream, results);
+            }
+        }
+    }
+
+    private static Path tracePath(Path traceDir, String algorithm, int run) throws IOException {
+        if (traceDir == null) {
+            return null;
+        }
+        Files.createDirectories(traceDir);
+        return traceDir.resolve(algorithm + "-" + run + ".trc");
+    }
+
+    private static Result runSort(String algorithm, String input, SortAlgorithm sort, int[] data,
+            Path tracePath) throws IOException {
+        TraceFile.Writer writer = tracePath == null ? null : new TraceFile.Writer(tracePath, data);
+        TracedArray array = new TracedArray(data, writer == null ? null : new OperationTrace(data, writer));
+        Result result;
+        try {
+            result = measure(algorithm, input, data.length, () -> {
+                try {
+                    sort.sort(array);
+                } catch (IllegalStateException e) {
+                    if (array.trace() == null || !array.trace().isTruncated()) {
+                        throw e;
+                    }
+                }
+            });
+        } finally {
+            if (writer != null) {
+                writer.close();
+            }
+        }
+        if (array.trace() != null && array.trace().isTruncated()) {
+            result.status = "trace-truncated";
+        }
+        result.comparisons = array.comparisons();
+        result.swaps = array.swaps();
+        result.reads = array.reads();
+        result.writes = array.writes();
+        for (int i = 1; i < data.length && "ok".equals(result.status); i++) {
+            if (data[i - 1] > data[i]) {
+                result.status = "unsorted";
+            }
+        }
+        return result;
+    }
+
+    private static Result runExternalSort(String input, long memoryBytes) throws IOException {
+        boolean converted = !input.endsWith(".bin") || input.startsWith("gen:");
+        Path source = converted ? Files.createTempFile("external-input", ".bin") : Paths.get(input);
+        Path output = Files.createTempFile("external-output", ".bin");
+        try {
+            if (converted) {
+                writeBinary(source, readArray(input));
+            }
+            ExternalSort sort = new ExternalSort(source, output, memoryBytes);
+            Result result = measure("external", input, sort.values(), () -> {
+                try {
+                    sort.run();
+                } catch (IOException e) {
+                    throw new java.io.UncheckedIOException(e);
+                }
+            });
+            result.writes = sort.values();
+            System.err.printf(Locale.ROOT, "external: %d runs of %d, runs %.1f MB/s, merge %.1f MB/s, "
+                    + "overall %.1f MB/s%n", sort.runCount(), sort.runLength(),
+                    sort.megabytesPerSecond(sort.produceNanos()), sort.megabytesPerSecond(sort.mergeNanos()),
+                    sort.megabytesPerSecond(sort.produceNanos() + sort.mergeNanos()));
+            if (!isSorted(output)) {
+                result.status = "unsorted";
+            }
+            return result;
+        } finally {
+            Files.deleteIfExists(output);
+            if (converted) {
+                Files.deleteIfExists(source);
+            }
+        }
+    }
+
+    private static void writeBinary(Path path, int[] data) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long window = 1L << 30;
+            for (long at = 0; at < data.length; at += window / 4) {
+                int count = (int) Math.min(window / 4, data.length - at);
+                channel.map(FileChannel.MapMode.READ_WRITE, at * 4, (long) count * 4).order(ByteOrder.LITTLE_ENDIAN)
+                        .asIntBuffer().put(data, (int) at, count);
+            }
+        }
+    }
+
+    // Checks a little-endian int32 file through mapped windows.
+    private static boolean isSorted(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long window = 1L << 30;
+            int previous = Integer.MIN_VALUE;
+            for (long position = 0; position < channel.size(); position += window) {
+                java.nio.IntBuffer values = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                        Math.min(window, channel.size() - position)).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+                while (values.hasRemaining()) {
+                    int value = values.get();
+                    if (value < previous) {
+                        return false;
+                    }
+                    previous = value;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static Result runTraversal(String algorithm, String input, Graph graph, Path tracePath)
+            throws IOException {
+        GraphTraversals traversals = new GraphTraversals();
+        int[] order = new int[graph.nodeCount()];
+        int[] visited = new int[1];
+        ParallelBfs.Result[] levels = new ParallelBfs.Result[1];
+        ShortestPaths paths = new ShortestPaths();
+        int target = graph.nodeCount() - 1;
+        Runnable run;
+        if ("bfs".equals(algorithm)) {
+            run = () -> visited[0] = traversals.bfs(graph, 0, order);
+        } else if ("dfs".equals(algorithm)) {
+            run = () -> visited[0] = traversals.dfs(graph, 0, order);
+        } else if ("parallel-bfs".equals(algorithm)) {
+            run = () -> visited[0] = (levels[0] = ParallelBfs.run(graph, 0)).reached;
+        } else if ("dijkstra".equals(algorithm)) {
+            run = () -> paths.dijkstra(graph, 0, target);
+        } else if ("astar".equals(algorithm)) {
+            run = () -> paths.aStar(graph, 0, target);
+        } else if ("bidijkstra".equals(algorithm)) {
+            run = () -> paths.bidirectionalDijkstra(graph, 0, target);
+        } else {
+            throw new IllegalArgumentException("Unknown traversal: " + algorithm);
+        }
+        Result result = measure(algorithm, input, graph.nodeCount(), graph.nodeCount() == 0 ? () -> {
+        } : run);
+        result.comparisons = traversals.edgeScans() + paths.relaxations();
+        result.writes = visited[0] + paths.settledCount();
+        if (paths.settledCount() > 0) {
+            System.err.printf(Locale.ROOT, "%s: distance %.3f, %d nodes settled%n", algorithm, paths.distance(),
+                    paths.settledCount());
+        }
+        if (levels[0] != null) {
+            ParallelBfs.Result bfs = levels[0];
+            for (int level = 0; level < bfs.levels; level++) {
+                System.err.printf(Locale.ROOT, "level %d: frontier %d, %s, %.3f ms%n", level, bfs.frontierSizes[level],
+                        bfs.bottomUp[level] ? "bottom-up" : "top-down", bfs.levelNanos[level] / 1e6);
+            }
+        }
+        if (tracePath != null) {
+            writeTraversalTrace(tracePath, graph.nodeCount(), order, visited[0], levels[0], paths);
+        }
+        return result;
+    }
+
+    // One write per node as the traversal reached it: visit order for BFS and DFS, level
+    // by level for the parallel BFS, and settle order then the path for shortest paths.
+    private static void writeTraversalTrace(Path path, int nodes, int[] order, int visited,
+            ParallelBfs.Result levels, ShortestPaths paths) throws IOException {
+        int[] marks = new int[nodes];
+        try (TraceFile.Writer writer = new TraceFile.Writer(path, marks)) {
+            OperationTrace trace = new OperationTrace(marks, writer);
+            if (levels != null) {
+                // Counting sort of the nodes by depth.
+                int[] starts = new int[levels.levels + 1];
+                for (int depth : levels.depth) {
+                    if (depth >= 0) {
+                        starts[depth + 1]++;
+                    }
+                }
+                for (int level = 0; level < levels.levels; level++) {
+                    starts[level + 1] += starts[level];
+                }
+                int[] byLevel = new int[starts[levels.levels]];
+                for (int node = 0; node < nodes; node++) {
+                    int depth = levels.depth[node];
+                    if (depth >= 0) {
+                        byLevel[starts[depth]++] = node;
+                    }
+                }
+                for (int node : byLevel) {
+                    mark(trace, marks, node, GraphTraversals.LEVEL + levels.depth[node]);
+                }
+            } else if (paths.settledCount() > 0) {
+                for (int i = 0; i < paths.settledCount(); i++) {
+                    mark(trace, marks, paths.settledNode(i), GraphTraversals.VISITED);
+                }
+                for (int node : paths.path()) {
+                    mark(trace, marks, node, GraphTraversals.ON_PATH);
+                }
+            } else {
+                for (int i = 0; i < visited; i++) {
+                    mark(trace, marks, order[i], GraphTraversals.VISITED);
+                }
+            }
+        }
+    }
+
+    private static void mark(OperationTrace trace, int[] marks, int node, int mark) {
+        trace.write(node, mark, marks[node]);
+        marks[node] = mark;
+    }
+
+    private static Result measure(String algorithm, String input, long size, Runnable run) {
+        Result result = new Result();
+        result.algorithm = algorithm;
+        result.input = input;
+        result.size = size;
+        List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+                heapPools.add(pool);
+            }
+        }
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        try {
+            run.run();
+        } catch (StackOverflowError e) {
+            result.status = "stack-overflow";
+        }
+        result.elapsedNanos = System.nanoTime() - start;
+        long allocatedAfter = allocatedBytes();
+        result.allocatedBytes = allocatedBefore < 0 ? -1 : allocatedAfter - allocatedBefore;
+        for (MemoryPoolMXBean pool : heapPools) {
+            result.peakHeapBytes += pool.getPeakUsage().getUsed();
+        }
+        return result;
+    }
+
+    // Bytes allocated by this thread so far, or -1 where the JVM does not report it.
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    static int[] readArray(String spec) throws IOException {
+        if (spec.startsWith("gen:")) {
+            String[] parts = spec.split(":");
+            long seed = parts.length > 3 ? Long.parseLong(parts[3]) : 42;
+            return Inputs.generate(parts[1], Integer.parseInt(parts[2]), seed);
+        }
+        Path path = Paths.get(spec);
+        if (spec.endsWith(".bin")) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                int[] data = new int[Math.toIntExact(channel.size() / 4)];
+                // Map in windows so files over 2 GB can still be read in one pass.
+                long window = 1L << 30;
+                int at = 0;
+                for (long position = 0; at < data.length; position += window) {
+                    long length = Math.min(window, (long) (data.length - at) * 4);
+                    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                    int count = (int) (length / 4);
+                    buffer.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(data, at, count);
+                    at += count;
+                }
+                return data;
+            }
+        }
+        try (IntTokenizer tokens = new IntTokenizer(Files.newInputStream(path))) {
+            int[] data = new int[1 << 16];
+            int size = 0;
+            while (tokens.next()) {
+                if (size == data.length) {
+                    data = Arrays.copyOf(data, (int) Math.min(Integer.MAX_VALUE - 8, data.length * 2L));
+                }
+                data[size++] = tokens.value();
+            }
+            return Arrays.copyOf(data, size);
+        }
+    }
+
+    static Graph readGraph(String spec) throws IOException {
+        Graph graph = new Graph();
+        if (spec.startsWith("gen:")) {
+            String[] parts = spec.split(":");
+            int nodes = Integer.parseInt(parts[2]);
+            long edges = Long.parseLong(parts[3]);
+            SplittableRandom random = new SplittableRandom(parts.length > 4 ? Long.parseLong(parts[4]) : 42);
+            int side = (int) Math.ceil(Math.sqrt(nodes)) * 100;
+            for (int i = 0; i < nodes; i++) {
+                graph.addNode(random.nextInt(side), random.nextInt(side));
+            }
+            for (long e = 0; e < edges && nodes > 1; e++) {
+                graph.addEdge(random.nextInt(nodes), random.nextInt(nodes));
+            }
+            return graph;
+        }
+        GraphIO.read(Paths.get(spec), graph);
+        return graph;
+    }
+
+    private static void writeCsv(PrintStream out, List<Result> results) {
+        out.println("algorithm,input,size,status,elapsed_ns,comparisons,swaps,reads,writes,allocated_bytes,"
+                + "peak_heap_bytes");
+        for (Result r : results) {
+            out.println(String.join(",", r.algorithm, r.input, Long.toString(r.size), r.status,
+                    Long.toString(r.elapsedNanos), Long.toString(r.comparisons), Long.toString(r.swaps),
+                    Long.toString(r.reads), Long.toString(r.writes), Long.toString(r.allocatedBytes),
+                    Long.toString(r.peakHeapBytes)));
+        }
+    }
+
+    private static void writeJson(PrintStream out, List<Result> results) {
+        out.println("[");
+        for (int i = 0; i < results.size(); i++) {
+            Result r = results.get(i);
+            out.print(String.format(Locale.ROOT,
+                    "  {\"algorithm\": \"%s\", \"input\": \"%s\", \"size\": %d, \"status\": \"%s\", "
+                            + "\"elapsedNs\": %d, \"comparisons\": %d, \"swaps\": %d, \"reads\": %d, \"writes\": %d, "
+                            + "\"allocatedBytes\": %d, \"peakHeapBytes\": %d}",
+                    r.algorithm, r.input.replace("\\", "\\\\").replace("\"", "\\\""), r.size, r.status,
+                    r.elapsedNanos, r.comparisons, r.swaps, r.reads, r.writes, r.allocatedBytes, r.peakHeapBytes));
+            out.println(i + 1 < results.size() ? "," : "");
+        }
+        out.println("]");
+    }
+
+    // Pulls ints straight out of a byte stream without building a String per token.
+    // Lines starting with '#' or '%' are skipped.
+    private static final class IntTokenizer implements AutoCloseable {
+        private final InputStream in;
+        private final byte[] buffer = new byte[1 << 16];
+        private int position, limit;
+        private int value;
+
+        IntTokenizer(InputStream in) {
+            this.in = in;
+        }
+
+        private int read() throws IOException {
+            if (position == limit) {
+                limit = in.read(buffer);
+                position = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    return -1;
+                }
+            }
+            return buffer[position++];
+        }
+
+        boolean next() throws IOException {
+            int c = read();
+            while (c != -1 && c != '-' && (c < '0' || c > '9')) {
+                if (c == '#' || c == '%') {
+                    while (c != -1 && c != '\n') {
+                        c = read();
+                    }
+                }
+                c = read();
+            }
+            if (c == -1) {
+                return false;
+            }
+            boolean negative = c == '-';
+            if (negative) {
+                c = read();
+            }
+            int result = 0;
+            while (c >= '0' && c <= '9') {
+                result = result * 10 + (c - '0');
+                c = read();
+            }
+            value = negative ? -result : result;
+            return true;
+        }
+
+        int value() {
+            return value;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
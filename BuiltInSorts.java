@@ -0,0 +1,139 @@
+// The sorts that ship with the visualizer, registered in META-INF/services/SortAlgorithm
+// in the order the UI lists them.
+final class BuiltInSorts {
+    private BuiltInSorts() {
+    }
+
+    private abstract static class BuiltIn implements SortAlgorithm {
+        private final String name, key;
+        private final boolean quadratic;
+
+        BuiltIn(String name, String key, boolean quadratic) {
+            this.name = name;
+            this.key = key;
+            this.quadratic = quadratic;
+        }
+
+        public String name() {
+            return name;
+        }
+
+        public String key() {
+            return key;
+        }
+
+        public boolean quadratic() {
+            return quadratic;
+        }
+    }
+
+    public static final class Bubble extends BuiltIn {
+        public Bubble() {
+            super("Bubble Sort", "bubble", true);
+        }
+
+        public void sort(TracedArray array) {
+            SortAlgorithms.bubbleSort(array);
+        }
+    }
+
+    public static final class Selection extends BuiltIn {
+        public Selection() {
+            super("Selection Sort", "selection", true);
+        }
+
+        public void sort(TracedArray array) {
+            SortAlgorithms.selectionSort(array);
+        }
+    }
+
+    public static final class Insertion extends BuiltIn {
+        public Insertion() {
+            super("Insertion Sort", "insertion", true);
+        }
+
+        public void sort(TracedArray array) {
+            SortAlgorithms.insertionSort(array);
+        }
+    }
+
+    public static final class Merge extends BuiltIn {
+        public Merge() {
+            super("Merge Sort", "merge", false);
+        }
+
+        public void sort(TracedArray array) {
+            SortAlgorithms.mergeSort(array);
+        }
+    }
+
+    public static final class Quick extends BuiltIn {
+        public Quick() {
+            super("Quick Sort", "quick", false);
+        }
+
+        public void sort(TracedArray array) {
+            SortAlgorithms.quickSort(array);
+        }
+    }
+
+    public static final class ParallelMerge extends BuiltIn {
+        public ParallelMerge() {
+            super("Parallel Merge Sort", "parallel-merge", false);
+        }
+
+        public void sort(TracedArray array) {
+            ParallelMergeSort.sort(array);
+        }
+    }
+
+    public static final class Intro extends BuiltIn {
+        public Intro() {
+            super("Intro Sort", "intro", false);
+        }
+
+        public void sort(TracedArray array) {
+            SortAlgorithms.introSort(array);
+        }
+    }
+
+    public static final class DualPivotQuick extends BuiltIn {
+        public DualPivotQuick() {
+            super("Dual-Pivot Quick Sort", "dual-pivot", false);
+        }
+
+        public void sort(TracedArray array) {
+            SortAlgorithms.dualPivotQuickSort(array);
+        }
+    }
+
+    public static final class Heap extends BuiltIn {
+        public Heap() {
+            super("Heap Sort", "heap", false);
+        }
+
+        public void sort(TracedArray array) {
+            SortAlgorithms.heapSort(array);
+        }
+    }
+
+    public static final class Radix extends BuiltIn {
+        public Radix() {
+            super("Radix Sort", "radix", false);
+        }
+
+        public void sort(TracedArray array) {
+            SortAlgorithms.radixSort(array);
+        }
+    }
+
+    public static final class Counting extends BuiltIn {
+        public Counting() {
+            super("Counting Sort", "counting", false);
+        }
+
+        public void sort(TracedArray array) {
+            SortAlgorithms.countingSort(array);
+        }
+    }
+}
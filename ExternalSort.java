@@ -0,0 +1,262 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Sorts a file of little-endian int32 values that need not fit in the heap. Phase one
+// reads the input through mapped windows one run at a time, radix sorts each run in a
+// reused buffer and scratch array, and spills it to a memory-mapped temporary file.
+// Phase two merges every run at once with a loser tree over primitive keys. Each run
+// is copied out of its mapping a block at a time, and the output is written with
+// sequential channel writes. The heap holds the run buffer, its scratch array and one
+// small block per run.
+//
+// Progress is published through volatile fields and atomic arrays, so a UI thread can
+// poll it while the sort runs.
+final class ExternalSort {
+    static final int PRODUCING = 0, MERGING = 1, DONE = 2;
+    private static final int BLOCK = 2048;
+    private static final int OUTPUT_BLOCK = 1 << 18;
+
+    private final Path input, output;
+    private final int runLength;
+    private final long values;
+    private final int runCount;
+    private final AtomicLongArray runSizes;
+    private final AtomicLongArray consumed;
+    private volatile int phase = PRODUCING;
+    private volatile int runsWritten;
+    private volatile long produced, merged;
+    private volatile long phaseStart;
+    private volatile long produceNanos, mergeNanos;
+
+    // memoryBytes bounds the run buffer and its scratch array, so a run holds memoryBytes / 8 values.
+    // Runs are mapped whole, and a mapping is at most Integer.MAX_VALUE bytes, which caps a run
+    // at Integer.MAX_VALUE / 4 values however big the budget.
+    public ExternalSort(Path input, Path output, long memoryBytes) throws IOException {
+        this.input = input;
+        this.output = output;
+        this.runLength = (int) Math.max(1, Math.min(Integer.MAX_VALUE / 4, memoryBytes / 8));
+        this.values = Files.size(input) / 4;
+        this.runCount = (int) ((values + runLength - 1) / runLength);
+        runSizes = new AtomicLongArray(runCount);
+        consumed = new AtomicLongArray(runCount);
+    }
+
+    public void run() throws IOException {
+        Path directory = Files.createTempDirectory("external-sort");
+        Path[] runs = new Path[runCount];
+        try {
+            long start = phaseStart = System.nanoTime();
+            produceRuns(directory, runs);
+            produceNanos = System.nanoTime() - start;
+            start = phaseStart = System.nanoTime();
+            phase = MERGING;
+            merge(runs);
+            mergeNanos = System.nanoTime() - start;
+            phase = DONE;
+        } finally {
+            for (Path run : runs) {
+                if (run != null) {
+                    Files.deleteIfExists(run);
+                }
+            }
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    private void produceRuns(Path directory, Path[] runs) throws IOException {
+        int[] buffer = new int[(int) Math.min(runLength, values)];
+        int[] scratch = new int[buffer.length];
+        try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ)) {
+            for (int run = 0; run < runCount; run++) {
+                RunService.checkCancelled();
+                long from = (long) run * runLength;
+                int length = (int) Math.min(runLength, values - from);
+                in.map(FileChannel.MapMode.READ_ONLY, from * 4, (long) length * 4).order(ByteOrder.LITTLE_ENDIAN)
+                        .asIntBuffer().get(buffer, 0, length);
+                SortAlgorithms.radixSort(buffer, length, scratch);
+                runs[run] = directory.resolve(String.format("run-%05d.bin", run));
+                try (FileChannel out = FileChannel.open(runs[run], StandardOpenOption.CREATE_NEW,
+                        StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                    out.map(FileChannel.MapMode.READ_WRITE, 0, (long) length * 4).order(ByteOrder.LITTLE_ENDIAN)
+                            .asIntBuffer().put(buffer, 0, length);
+                }
+                runSizes.set(run, length);
+                produced += length;
+                runsWritten = run + 1;
+            }
+        }
+    }
+
+    private void merge(Path[] runs) throws IOException {
+        IntBuffer[] mapped = new IntBuffer[runCount];
+        int[][] blocks = new int[runCount][];
+        int[] positions = new int[runCount], limits = new int[runCount];
+        // Exhausted runs hold a key above every int, so they lose every match.
+        long[] keys = new long[runCount];
+        for (int run = 0; run < runCount; run++) {
+            try (FileChannel channel = FileChannel.open(runs[run], StandardOpenOption.READ)) {
+                mapped[run] = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+                        .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+            }
+            blocks[run] = new int[Math.min(BLOCK, mapped[run].remaining())];
+            keys[run] = refill(mapped[run], blocks[run], positions, limits, run);
+        }
+        ByteBuffer bytes = ByteBuffer.allocateDirect(OUTPUT_BLOCK * 4).order(ByteOrder.LITTLE_ENDIAN);
+        IntBuffer ints = bytes.asIntBuffer();
+        int[] block = new int[OUTPUT_BLOCK];
+        int size = 0;
+        try (FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            LoserTree tree = runCount == 0 ? null : new LoserTree(keys);
+            long count = 0;
+            for (int winner = tree == null ? -1 : tree.winner; winner >= 0 && keys[winner] != Long.MAX_VALUE;
+                    winner = tree.replay()) {
+                block[size++] = (int) keys[winner];
+                keys[winner] = positions[winner] < limits[winner] ? blocks[winner][positions[winner]++]
+                        : refill(mapped[winner], blocks[winner], positions, limits, winner);
+                if (size == OUTPUT_BLOCK) {
+                    write(out, bytes, ints, block, size);
+                    size = 0;
+                    count += OUTPUT_BLOCK;
+                    RunService.checkCancelled();
+                    publish(mapped, positions, limits, count);
+                }
+            }
+            write(out, bytes, ints, block, size);
+            publish(mapped, positions, limits, count + size);
+        }
+    }
+
+    // Copies the run's next block out of its mapping and returns its first value.
+    private static long refill(IntBuffer run, int[] block, int[] positions, int[] limits, int index) {
+        int length = Math.min(block.length, run.remaining());
+        if (length == 0) {
+            return Long.MAX_VALUE;
+        }
+        run.get(block, 0, length);
+        positions[index] = 1;
+        limits[index] = length;
+        return block[0];
+    }
+
+    private void publish(IntBuffer[] mapped, int[] positions, int[] limits, long count) {
+        for (int run = 0; run < runCount; run++) {
+            consumed.set(run, mapped[run].position() - (limits[run] - positions[run]));
+        }
+        merged = count;
+    }
+
+    private static void write(FileChannel out, ByteBuffer bytes, IntBuffer ints, int[] block, int size)
+            throws IOException {
+        ints.clear();
+        ints.put(block, 0, size);
+        bytes.clear().limit(size * 4);
+        while (bytes.hasRemaining()) {
+            out.write(bytes);
+        }
+    }
+
+    // Tournament over the run heads: losers[node] keeps the loser of the match played
+    // at node, so replacing the winner's key replays only its path to the root.
+    // Runs are leaves k..2k-1 of an implicit binary tree over nodes 1..k-1.
+    private static final class LoserTree {
+        private final long[] keys;
+        private final int[] losers;
+        private final int k;
+        int winner;
+
+        LoserTree(long[] keys) {
+            this.keys = keys;
+            this.k = keys.length;
+            this.losers = new int[k];
+            winner = build(1);
+        }
+
+        private int build(int node) {
+            if (node >= k) {
+                return node - k;
+            }
+            int left = build(2 * node), right = build(2 * node + 1);
+            if (keys[left] <= keys[right]) {
+                losers[node] = right;
+                return left;
+            }
+            losers[node] = left;
+            return right;
+        }
+
+        int replay() {
+            int w = winner;
+            for (int node = (w + k) >>> 1; node > 0; node >>>= 1) {
+                int loser = losers[node];
+                if (keys[loser] < keys[w]) {
+                    losers[node] = w;
+                    w = loser;
+                }
+            }
+            winner = w;
+            return w;
+        }
+    }
+
+    public long values() {
+        return values;
+    }
+
+    public int runLength() {
+        return runLength;
+    }
+
+    public int runCount() {
+        return runCount;
+    }
+
+    public int phase() {
+        return phase;
+    }
+
+    public int runsWritten() {
+        return runsWritten;
+    }
+
+    // Values in the run, or 0 until it has been written.
+    public long runSize(int run) {
+        return runSizes.get(run);
+    }
+
+    // Values of the run already merged into the output.
+    public long consumed(int run) {
+        return consumed.get(run);
+    }
+
+    public long merged() {
+        return merged;
+    }
+
+    // Throughput of the phase in progress so far.
+    public double currentMegabytesPerSecond() {
+        long elapsed = System.nanoTime() - phaseStart;
+        long done = phase == PRODUCING ? produced : merged;
+        return elapsed <= 0 ? 0 : done * 4 / 1e6 / (elapsed / 1e9);
+    }
+
+    public long produceNanos() {
+        return produceNanos;
+    }
+
+    public long mergeNanos() {
+        return mergeNanos;
+    }
+
+    // Input megabytes per second over the given time.
+    public double megabytesPerSecond(long nanos) {
+        return nanos == 0 ? 0 : values * 4 / 1e6 / (nanos / 1e9);
+    }
+}
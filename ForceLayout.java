@@ -0,0 +1,306 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.IntStream;
+
+// Fruchterman-Reingold force-directed layout with Barnes-Hut repulsion, so an
+// iteration costs O(n log n) instead of O(n^2). Positions and forces live in
+// primitive arrays, and the structure is copied at construction, so iterations can
+// run off the EDT while the Graph keeps being painted. Forces for each node are
+// computed in parallel on the common pool. After every iteration the positions are
+// published for the UI to pick up whenever it next draws.
+final class ForceLayout {
+    private static final double IDEAL_LENGTH = 120;
+    private static final double THETA = 1.2;
+    private static final double COOLING = 0.96;
+    private static final double MIN_TEMPERATURE = 0.5;
+    private static final int MAX_DEPTH = 48;
+    private static final int CHUNK = 1024;
+
+    private final int n;
+    private final int[] offsets;
+    private final int[] targets;
+    private final double[] xs, ys;
+    private final double[] forceX, forceY;
+    private final QuadTree tree;
+    private double temperature;
+    private int iterations;
+    private final AtomicReference<int[]> published = new AtomicReference<>();
+
+    public ForceLayout(Graph graph) {
+        n = graph.nodeCount();
+        offsets = new int[n + 1];
+        for (int node = 0; node < n; node++) {
+            offsets[node + 1] = offsets[node] + graph.degree(node);
+        }
+        targets = new int[offsets[n]];
+        xs = new double[n];
+        ys = new double[n];
+        for (int node = 0; node < n; node++) {
+            for (int k = 0, degree = graph.degree(node); k < degree; k++) {
+                targets[offsets[node] + k] = graph.neighbor(node, k);
+            }
+            xs[node] = graph.x(node);
+            ys[node] = graph.y(node);
+        }
+        forceX = new double[n];
+        forceY = new double[n];
+        tree = new QuadTree(n);
+        temperature = IDEAL_LENGTH * Math.max(1, Math.sqrt(n)) / 4;
+    }
+
+    // Iterates until the layout cools down or the calling thread is interrupted.
+    public void run(int maxIterations) {
+        while (iterations < maxIterations && step()) {
+            RunService.checkCancelled();
+        }
+    }
+
+    // One iteration; returns false once the layout has cooled down.
+    public boolean step() {
+        if (n == 0 || temperature < MIN_TEMPERATURE) {
+            return false;
+        }
+        tree.build(xs, ys);
+        int chunks = (n + CHUNK - 1) / CHUNK;
+        IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            int[] stack = new int[4 * MAX_DEPTH + 4];
+            // Nodes are visited in tree order so neighbouring iterations walk the same cells.
+            for (int i = chunk * CHUNK, end = Math.min(n, i + CHUNK); i < end; i++) {
+                computeForce(tree.order[i], stack);
+            }
+        });
+        double limit = temperature;
+        IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            for (int node = chunk * CHUNK, end = Math.min(n, node + CHUNK); node < end; node++) {
+                double fx = forceX[node], fy = forceY[node];
+                double length = Math.sqrt(fx * fx + fy * fy);
+                if (length > 0) {
+                    double move = Math.min(length, limit) / length;
+                    xs[node] += fx * move;
+                    ys[node] += fy * move;
+                }
+            }
+        });
+        temperature *= COOLING;
+        iterations++;
+        publish();
+        return true;
+    }
+
+    private void computeForce(int node, int[] stack) {
+        double x = xs[node], y = ys[node];
+        double k2 = IDEAL_LENGTH * IDEAL_LENGTH;
+        double fx = 0, fy = 0;
+        // Repulsion k^2/d from every other node, with far cells treated as one mass.
+        int top = 0;
+        stack[top++] = 0;
+        while (top > 0) {
+            int cell = stack[--top];
+            int mass = tree.mass[cell];
+            if (mass == 0) {
+                continue;
+            }
+            double dx = x - tree.centerX[cell], dy = y - tree.centerY[cell];
+            double d2 = dx * dx + dy * dy;
+            boolean leaf = tree.children[4 * cell] < 0;
+            if (leaf || tree.size[cell] * tree.size[cell] < THETA * THETA * d2) {
+                if (leaf && tree.body[cell] == node) {
+                    mass--;
+                    if (mass == 0) {
+                        continue;
+                    }
+                }
+                if (d2 < 1e-6) {
+                    // Coincident nodes get pushed apart in a direction derived from their id.
+                    dx = Math.cos(node);
+                    dy = Math.sin(node);
+                    d2 = 1;
+                }
+                double f = k2 * mass / d2;
+                fx += dx * f;
+                fy += dy * f;
+            } else {
+                for (int c = 0; c < 4; c++) {
+                    int child = tree.children[4 * cell + c];
+                    if (child >= 0) {
+                        stack[top++] = child;
+                    }
+                }
+            }
+        }
+        // Attraction d^2/k along each edge.
+        for (int i = offsets[node]; i < offsets[node + 1]; i++) {
+            int other = targets[i];
+            double dx = xs[other] - x, dy = ys[other] - y;
+            double d = Math.sqrt(dx * dx + dy * dy);
+            fx += dx * d / IDEAL_LENGTH;
+            fy += dy * d / IDEAL_LENGTH;
+        }
+        forceX[node] = fx;
+        forceY[node] = fy;
+    }
+
+    private void publish() {
+        int[] positions = new int[2 * n];
+        for (int node = 0; node < n; node++) {
+            positions[2 * node] = (int) Math.round(xs[node]);
+            positions[2 * node + 1] = (int) Math.round(ys[node]);
+        }
+        published.set(positions);
+    }
+
+    // Latest positions as x,y pairs, or null if nothing new was published since the last call.
+    public int[] takePositions() {
+        return published.getAndSet(null);
+    }
+
+    public int nodeCount() {
+        return n;
+    }
+
+    public int iterations() {
+        return iterations;
+    }
+
+    // Array-backed quadtree rebuilt each iteration. Each cell keeps its body count and
+    // center of mass; leaves hold one body, except at MAX_DEPTH where coincident
+    // bodies share a leaf.
+    private static final class QuadTree {
+        int[] children;
+        int[] body;
+        int[] mass;
+        double[] centerX, centerY, minX, minY, size;
+        int count;
+        // Bodies in depth-first leaf order.
+        final int[] order;
+
+        QuadTree(int bodies) {
+            allocate(Math.max(16, 2 * bodies));
+            order = new int[bodies];
+        }
+
+        private void allocate(int capacity) {
+            children = new int[4 * capacity];
+            body = new int[capacity];
+            mass = new int[capacity];
+            centerX = new double[capacity];
+            centerY = new double[capacity];
+            minX = new double[capacity];
+            minY = new double[capacity];
+            size = new double[capacity];
+        }
+
+        private void grow() {
+            int capacity = body.length * 2;
+            children = Arrays.copyOf(children, 4 * capacity);
+            body = Arrays.copyOf(body, capacity);
+            mass = Arrays.copyOf(mass, capacity);
+            centerX = Arrays.copyOf(centerX, capacity);
+            centerY = Arrays.copyOf(centerY, capacity);
+            minX = Arrays.copyOf(minX, capacity);
+            minY = Arrays.copyOf(minY, capacity);
+            size = Arrays.copyOf(size, capacity);
+        }
+
+        void build(double[] xs, double[] ys) {
+            double left = Double.POSITIVE_INFINITY, top = Double.POSITIVE_INFINITY;
+            double right = Double.NEGATIVE_INFINITY, bottom = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < xs.length; i++) {
+                left = Math.min(left, xs[i]);
+                right = Math.max(right, xs[i]);
+                top = Math.min(top, ys[i]);
+                bottom = Math.max(bottom, ys[i]);
+            }
+            count = 0;
+            newCell(left, top, Math.max(1, Math.max(right - left, bottom - top)) * 1.0001);
+            for (int i = 0; i < xs.length; i++) {
+                insert(i, xs[i], ys[i]);
+            }
+            for (int cell = 0; cell < count; cell++) {
+                centerX[cell] /= mass[cell];
+                centerY[cell] /= mass[cell];
+            }
+            int ordered = 0;
+            int[] stack = new int[4 * MAX_DEPTH + 4];
+            int pending = 0;
+            stack[pending++] = 0;
+            boolean[] placed = new boolean[xs.length];
+            while (pending > 0) {
+                int cell = stack[--pending];
+                if (children[4 * cell] < 0) {
+                    if (body[cell] >= 0 && !placed[body[cell]]) {
+                        placed[body[cell]] = true;
+                        order[ordered++] = body[cell];
+                    }
+                    continue;
+                }
+                for (int q = 3; q >= 0; q--) {
+                    stack[pending++] = children[4 * cell + q];
+                }
+            }
+            // Bodies sharing a MAX_DEPTH leaf are not listed above; append them in id order.
+            for (int i = 0; i < xs.length && ordered < xs.length; i++) {
+                if (!placed[i]) {
+                    order[ordered++] = i;
+                }
+            }
+        }
+
+        // centerX/centerY hold coordinate sums until build divides them by mass.
+        private void insert(int b, double x, double y) {
+            int cell = 0;
+            for (int depth = 0;; depth++) {
+                mass[cell]++;
+                centerX[cell] += x;
+                centerY[cell] += y;
+                if (children[4 * cell] >= 0) {
+                    cell = children[4 * cell + quadrant(cell, x, y)];
+                    continue;
+                }
+                if (mass[cell] == 1) {
+                    body[cell] = b;
+                    return;
+                }
+                if (depth >= MAX_DEPTH) {
+                    return;
+                }
+                // Split the leaf and push its existing body down one level.
+                int old = body[cell];
+                double oldX = (centerX[cell] - x) / (mass[cell] - 1), oldY = (centerY[cell] - y) / (mass[cell] - 1);
+                double half = size[cell] / 2;
+                for (int q = 0; q < 4; q++) {
+                    int child = newCell(minX[cell] + (q & 1) * half, minY[cell] + (q >> 1) * half, half);
+                    children[4 * cell + q] = child;
+                }
+                body[cell] = -1;
+                int child = children[4 * cell + quadrant(cell, oldX, oldY)];
+                mass[child] = mass[cell] - 1;
+                centerX[child] = oldX * mass[child];
+                centerY[child] = oldY * mass[child];
+                body[child] = old;
+                cell = children[4 * cell + quadrant(cell, x, y)];
+            }
+        }
+
+        private int quadrant(int cell, double x, double y) {
+            double half = size[cell] / 2;
+            return (x >= minX[cell] + half ? 1 : 0) | (y >= minY[cell] + half ? 2 : 0);
+        }
+
+        private int newCell(double x, double y, double cellSize) {
+            if (count == body.length) {
+                grow();
+            }
+            int cell = count++;
+            Arrays.fill(children, 4 * cell, 4 * cell + 4, -1);
+            body[cell] = -1;
+            mass[cell] = 0;
+            centerX[cell] = 0;
+            centerY[cell] = 0;
+            minX[cell] = x;
+            minY[cell] = y;
+            size[cell] = cellSize;
+            return cell;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+import javax.swing.*;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// Single ~60 Hz clock on the EDT that owns repaints. Producers publish state and
+// call requestRepaint from any thread; each tick runs the frame listeners once and
+// then repaints every component that asked for it, however many times it asked.
+// It also counts the frames it ran and missed for UiMetrics.
+final class FrameClock implements FrameClockMBean {
+    interface FrameListener {
+        void onFrame(long elapsedNanos);
+    }
+
+    static final int FRAME_MILLIS = 16;
+    private static final long FRAME_NANOS = FRAME_MILLIS * 1_000_000L;
+    private static final FrameClock INSTANCE = new FrameClock();
+
+    private final javax.swing.Timer timer = new javax.swing.Timer(FRAME_MILLIS, e -> tick());
+    private final CopyOnWriteArrayList<FrameListener> listeners = new CopyOnWriteArrayList<>();
+    private final Set<JComponent> dirty = ConcurrentHashMap.newKeySet();
+    private long lastTick;
+    // Written on the EDT, read by JMX and the HUD.
+    private volatile long frames, droppedFrames;
+    private volatile int pendingRepaints, maxPendingRepaints;
+
+    private FrameClock() {
+        timer.setCoalesce(true);
+    }
+
+    public static FrameClock get() {
+        return INSTANCE;
+    }
+
+    public void addListener(FrameListener listener) {
+        listeners.addIfAbsent(listener);
+        wake();
+    }
+
+    public void removeListener(FrameListener listener) {
+        listeners.remove(listener);
+    }
+
+    public void requestRepaint(JComponent component) {
+        dirty.add(component);
+        wake();
+    }
+
+    private void wake() {
+        if (SwingUtilities.isEventDispatchThread()) {
+            if (!timer.isRunning()) {
+                lastTick = System.nanoTime();
+                timer.start();
+            }
+        } else {
+            SwingUtilities.invokeLater(this::wake);
+        }
+    }
+
+    private void tick() {
+        long now = System.nanoTime();
+        long elapsed = now - lastTick;
+        lastTick = now;
+        // A late tick stands in for every frame that should have run meanwhile.
+        long missed = (elapsed + FRAME_NANOS / 2) / FRAME_NANOS - 1;
+        if (missed > 0) {
+            droppedFrames += missed;
+        }
+        frames++;
+        int pending = dirty.size();
+        pendingRepaints = pending;
+        if (pending > maxPendingRepaints) {
+            maxPendingRepaints = pending;
+        }
+        for (FrameListener listener : listeners) {
+            listener.onFrame(elapsed);
+        }
+        for (JComponent component : dirty) {
+            dirty.remove(component);
+            component.repaint();
+        }
+        if (listeners.isEmpty() && dirty.isEmpty()) {
+            timer.stop();
+        }
+    }
+
+    public long getFrames() {
+        return frames;
+    }
+
+    public long getDroppedFrames() {
+        return droppedFrames;
+    }
+
+    public int getPendingRepaintComponents() {
+        return pendingRepaints;
+    }
+
+    public int getMaxPendingRepaintComponents() {
+        return maxPendingRepaints;
+    }
+
+    public void reset() {
+        frames = 0;
+        droppedFrames = 0;
+        pendingRepaints = 0;
+        maxPendingRepaints = 0;
+    }
+
+    // Turns elapsed frame time into a whole number of algorithm steps, carrying the
+    // fraction over so slow speeds still advance and fast ones batch many steps per frame.
+    static final class Pacer {
+        static final double MIN_STEPS_PER_SECOND = 0.1;
+        static final double MAX_STEPS_PER_SECOND = 1_000_000;
+        private static final long MAX_FRAME_NANOS = 100_000_000L;
+
+        private double stepsPerSecond;
+        private double pending;
+
+        Pacer(double stepsPerSecond) {
+            setStepsPerSecond(stepsPerSecond);
+        }
+
+        void setStepsPerSecond(double stepsPerSecond) {
+            this.stepsPerSecond = Math.max(MIN_STEPS_PER_SECOND, Math.min(MAX_STEPS_PER_SECOND, stepsPerSecond));
+        }
+
+        double stepsPerSecond() {
+            return stepsPerSecond;
+        }
+
+        // The first frame after a reset always takes a step.
+        void reset() {
+            pending = 1;
+        }
+
+        int steps(long elapsedNanos) {
+            pending += stepsPerSecond * Math.min(elapsedNanos, MAX_FRAME_NANOS) / 1e9;
+            int steps = (int) pending;
+            pending -= steps;
+            return steps;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+// JMX view of the FrameClock's frame pacing. JMX only accepts public management interfaces.
+public interface FrameClockMBean {
+    long getFrames();
+
+    // Ticks the timer should have run but could not because the EDT was busy.
+    long getDroppedFrames();
+
+    // Components that asked for a repaint and were waiting for the last tick. This is not the
+    // EDT's event backlog; UiMetrics' EdtLag histogram measures that.
+    int getPendingRepaintComponents();
+
+    int getMaxPendingRepaintComponents();
+
+    void reset();
+}
@@ -0,0 +1,297 @@
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.IndexColorModel;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageOutputStream;
+
+// Encodes rendered frames on a worker pool, either as a numbered PNG sequence
+// ("demo.png" becomes demo-00000.png, demo-00001.png, ...) or as one looping
+// animated GIF. GIF frames are cropped to the area that changed since the previous
+// frame and palettized in parallel, then written in order by a single writer. At
+// most a fixed number of frames are in flight; addFrame blocks
+// until a slot frees up, so a fast renderer cannot run ahead of the encoders.
+final class FrameExporter implements AutoCloseable {
+    enum Format {
+        PNG_SEQUENCE, GIF;
+
+        static Format forPath(Path path) {
+            return path.getFileName().toString().toLowerCase().endsWith(".gif") ? GIF : PNG_SEQUENCE;
+        }
+    }
+
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    private final Format format;
+    private final Path target;
+    private final int frameMillis;
+    private final ExecutorService encoders;
+    private final ExecutorService writer;
+    private final Semaphore inFlight;
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    private ImageOutputStream gifOutput;
+    private ImageWriter gifWriter;
+    private int frames;
+    private BufferedImage previous;
+
+    public FrameExporter(Path target, int frameMillis) throws IOException {
+        this.target = target;
+        this.format = Format.forPath(target);
+        this.frameMillis = frameMillis;
+        int workers = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        encoders = Executors.newFixedThreadPool(workers, FrameExporter::newThread);
+        writer = Executors.newSingleThreadExecutor(FrameExporter::newThread);
+        inFlight = new Semaphore(2 * workers + 2);
+        if (format == Format.GIF) {
+            Files.deleteIfExists(target);
+            gifOutput = ImageIO.createImageOutputStream(target.toFile());
+            gifWriter = ImageIO.getImageWritersByFormatName("gif").next();
+            gifWriter.setOutput(gifOutput);
+            gifWriter.prepareWriteSequence(null);
+        }
+    }
+
+    private static Thread newThread(Runnable task) {
+        Thread thread = new Thread(task, "frame-encoder-" + THREAD_COUNT.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    // The exporter owns frame after this call; callers must render the next frame into a new image.
+    public void addFrame(BufferedImage frame) throws IOException, InterruptedException {
+        checkFailure();
+        inFlight.acquire();
+        int index = frames++;
+        if (format == Format.PNG_SEQUENCE) {
+            encoders.execute(() -> {
+                try {
+                    ImageIO.write(frame, "png", pngPath(index).toFile());
+                } catch (IOException | RuntimeException e) {
+                    failure.compareAndSet(null, e);
+                } finally {
+                    inFlight.release();
+                }
+            });
+        } else {
+            BufferedImage before = previous;
+            previous = frame;
+            Future<GifFrame> indexed = encoders.submit(() -> toGifFrame(frame, before));
+            writer.execute(() -> {
+                try {
+                    writeGifFrame(indexed.get(), index == 0);
+                } catch (Exception e) {
+                    failure.compareAndSet(null, e);
+                } finally {
+                    inFlight.release();
+                }
+            });
+        }
+    }
+
+    public int frames() {
+        return frames;
+    }
+
+    private Path pngPath(int index) {
+        String name = target.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String stem = dot > 0 ? name.substring(0, dot) : name;
+        return target.resolveSibling(String.format("%s-%05d.png", stem, index));
+    }
+
+    private static final class GifFrame {
+        final BufferedImage image;
+        final int x, y;
+
+        GifFrame(BufferedImage image, int x, int y) {
+            this.image = image;
+            this.x = x;
+            this.y = y;
+        }
+    }
+
+    // The part of frame that differs from before, palettized. Unchanged frames become
+    // a single pixel so the GIF still holds the frame's delay.
+    private static GifFrame toGifFrame(BufferedImage frame, BufferedImage before) {
+        int w = frame.getWidth(), h = frame.getHeight();
+        if (before == null || before.getWidth() != w || before.getHeight() != h) {
+            return new GifFrame(toIndexed(frame), 0, 0);
+        }
+        int[] now = pixels(frame), then = pixels(before);
+        int minX = w, minY = h, maxX = -1, maxY = -1;
+        for (int y = 0; y < h; y++) {
+            int row = y * w;
+            if (Arrays.mismatch(now, row, row + w, then, row, row + w) < 0) {
+                continue;
+            }
+            minY = Math.min(minY, y);
+            maxY = y;
+            for (int x = 0; x < w; x++) {
+                if (now[row + x] != then[row + x]) {
+                    minX = Math.min(minX, x);
+                    maxX = Math.max(maxX, x);
+                }
+            }
+        }
+        if (maxY < 0) {
+            return new GifFrame(toIndexed(frame.getSubimage(0, 0, 1, 1)), 0, 0);
+        }
+        return new GifFrame(toIndexed(frame.getSubimage(minX, minY, maxX - minX + 1, maxY - minY + 1)), minX, minY);
+    }
+
+    private static int[] pixels(BufferedImage image) {
+        if (image.getType() == BufferedImage.TYPE_INT_RGB) {
+            return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        }
+        return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+    }
+
+    // Frames with at most 256 colors, as the visualizers draw, keep them exactly;
+    // anything else is dithered onto the default palette.
+    private static BufferedImage toIndexed(BufferedImage frame) {
+        int w = frame.getWidth(), h = frame.getHeight();
+        int[] pixels = frame.getRGB(0, 0, w, h, null, 0, w);
+        int[] table = new int[1024];
+        byte[] slots = new byte[table.length];
+        int[] palette = new int[256];
+        int colors = 0;
+        byte[] indices = new byte[w * h];
+        for (int i = 0; i < pixels.length && colors >= 0; i++) {
+            int rgb = pixels[i] & 0xFFFFFF;
+            int slot = (rgb * 0x9E3779B1 >>> 22);
+            while (true) {
+                if (table[slot] == 0) {
+                    if (colors == 256) {
+                        colors = -1;
+                        break;
+                    }
+                    table[slot] = rgb | 0x1000000;
+                    slots[slot] = (byte) colors;
+                    palette[colors++] = rgb;
+                    break;
+                }
+                if (table[slot] == (rgb | 0x1000000)) {
+                    break;
+                }
+                slot = (slot + 1) & (table.length - 1);
+            }
+            if (colors >= 0) {
+                indices[i] = slots[slot];
+            }
+        }
+        if (colors < 0) {
+            BufferedImage indexed = new BufferedImage(w, h, BufferedImage.TYPE_BYTE_INDEXED);
+            indexed.getGraphics().drawImage(frame, 0, 0, null);
+            return indexed;
+        }
+        // GIF color tables hold a power of two entries.
+        int size = 2;
+        while (size < colors) {
+            size *= 2;
+        }
+        IndexColorModel model = new IndexColorModel(8, size, palette, 0, false, -1,
+                java.awt.image.DataBuffer.TYPE_BYTE);
+        BufferedImage indexed = new BufferedImage(w, h, BufferedImage.TYPE_BYTE_INDEXED, model);
+        indexed.getRaster().setDataElements(0, 0, w, h, indices);
+        return indexed;
+    }
+
+    private void writeGifFrame(GifFrame frame, boolean first) throws IOException {
+        IIOMetadata metadata = gifWriter.getDefaultImageMetadata(
+                ImageTypeSpecifier.createFromRenderedImage(frame.image), null);
+        String formatName = metadata.getNativeMetadataFormatName();
+        IIOMetadataNode root = (IIOMetadataNode) metadata.getAsTree(formatName);
+        IIOMetadataNode descriptor = child(root, "ImageDescriptor");
+        descriptor.setAttribute("imageLeftPosition", Integer.toString(frame.x));
+        descriptor.setAttribute("imageTopPosition", Integer.toString(frame.y));
+        // The default table is not always the frame's own palette, so it is rebuilt from the frame.
+        IndexColorModel model = (IndexColorModel) frame.image.getColorModel();
+        root.removeChild(child(root, "LocalColorTable"));
+        IIOMetadataNode table = new IIOMetadataNode("LocalColorTable");
+        root.insertBefore(table, descriptor.getNextSibling());
+        table.setAttribute("sizeOfLocalColorTable", Integer.toString(model.getMapSize()));
+        table.setAttribute("sortFlag", "FALSE");
+        for (int i = 0; i < model.getMapSize(); i++) {
+            IIOMetadataNode entry = new IIOMetadataNode("ColorTableEntry");
+            entry.setAttribute("index", Integer.toString(i));
+            entry.setAttribute("red", Integer.toString(model.getRed(i)));
+            entry.setAttribute("green", Integer.toString(model.getGreen(i)));
+            entry.setAttribute("blue", Integer.toString(model.getBlue(i)));
+            table.appendChild(entry);
+        }
+        IIOMetadataNode control = child(root, "GraphicControlExtension");
+        control.setAttribute("disposalMethod", "doNotDispose");
+        control.setAttribute("userInputFlag", "FALSE");
+        control.setAttribute("transparentColorFlag", "FALSE");
+        control.setAttribute("delayTime", Integer.toString(Math.max(2, frameMillis / 10)));
+        control.setAttribute("transparentColorIndex", "0");
+        if (first) {
+            IIOMetadataNode loop = new IIOMetadataNode("ApplicationExtension");
+            loop.setAttribute("applicationID", "NETSCAPE");
+            loop.setAttribute("authenticationCode", "2.0");
+            loop.setUserObject(new byte[] { 1, 0, 0 });
+            child(root, "ApplicationExtensions").appendChild(loop);
+        }
+        metadata.setFromTree(formatName, root);
+        gifWriter.writeToSequence(new IIOImage(frame.image, null, metadata), null);
+    }
+
+    private static IIOMetadataNode child(IIOMetadataNode parent, String name) {
+        for (int i = 0; i < parent.getLength(); i++) {
+            if (parent.item(i).getNodeName().equalsIgnoreCase(name)) {
+                return (IIOMetadataNode) parent.item(i);
+            }
+        }
+        IIOMetadataNode node = new IIOMetadataNode(name);
+        parent.appendChild(node);
+        return node;
+    }
+
+    private void checkFailure() throws IOException {
+        Throwable error = failure.get();
+        if (error != null) {
+            // A new exception each time, since close may rethrow what addFrame already threw.
+            throw new IOException(error.getMessage(), error);
+        }
+    }
+
+    // Waits for every queued frame to be written, then finishes the file.
+    @Override
+    public void close() throws IOException {
+        encoders.shutdown();
+        writer.shutdown();
+        try {
+            encoders.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            writer.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            encoders.shutdownNow();
+            writer.shutdownNow();
+            Thread.currentThread().interrupt();
+        } finally {
+            if (gifWriter != null) {
+                try {
+                    gifWriter.endWriteSequence();
+                } finally {
+                    gifWriter.dispose();
+                    gifOutput.close();
+                }
+            }
+        }
+        checkFailure();
+    }
+}
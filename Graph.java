@@ -0,0 +1,215 @@
+import java.util.Arrays;
+
+// Undirected graph over int node ids 0..nodeCount-1 with growable primitive
+// adjacency lists and per-node coordinates. Edges are deduplicated through a
+// primitive hash set of packed (min, max) keys, so duplicates and reversed
+// duplicates are rejected in O(1). Edge weights default to the Euclidean distance
+// between the ends and can be overridden per edge. Has no Swing dependencies so it
+// can be used headless.
+final class Graph {
+    private int nodeCount;
+    private long edgeCount;
+    private int[][] adjacency = new int[16][];
+    private int[] degree = new int[16];
+    private int[] xs = new int[16];
+    private int[] ys = new int[16];
+    private int[] edgeEnds = new int[32];
+    private final LongHashSet edgeKeys = new LongHashSet();
+    // Explicit weights per adjacency slot, allocated on first setWeight; NaN keeps the default.
+    private float[][] weights;
+
+    public int addNode() {
+        return addNode(0, 0);
+    }
+
+    public int addNode(int x, int y) {
+        if (nodeCount == degree.length) {
+            int capacity = degree.length * 2;
+            adjacency = Arrays.copyOf(adjacency, capacity);
+            degree = Arrays.copyOf(degree, capacity);
+            xs = Arrays.copyOf(xs, capacity);
+            ys = Arrays.copyOf(ys, capacity);
+            if (weights != null) {
+                weights = Arrays.copyOf(weights, capacity);
+            }
+        }
+        adjacency[nodeCount] = new int[4];
+        xs[nodeCount] = x;
+        ys[nodeCount] = y;
+        return nodeCount++;
+    }
+
+    // Presizes storage for loaders that know the final size up front.
+    public void ensureCapacity(int nodes, long edges) {
+        // Fails on an edge count the edge set cannot hold before anything big is allocated.
+        edgeKeys.ensureCapacity(edges);
+        if (nodes > degree.length) {
+            adjacency = Arrays.copyOf(adjacency, nodes);
+            degree = Arrays.copyOf(degree, nodes);
+            xs = Arrays.copyOf(xs, nodes);
+            ys = Arrays.copyOf(ys, nodes);
+            if (weights != null) {
+                weights = Arrays.copyOf(weights, nodes);
+            }
+        }
+        if (edges * 2 > edgeEnds.length) {
+            edgeEnds = Arrays.copyOf(edgeEnds, (int) Math.min(Integer.MAX_VALUE - 8, edges * 2));
+        }
+    }
+
+    public void addNodes(int count) {
+        for (int i = 0; i < count; i++) {
+            addNode();
+        }
+    }
+
+    // Returns false for self loops and edges that already exist in either direction.
+    // Accepted edges get ids 0..edgeCount-1 in insertion order.
+    public boolean addEdge(int a, int b) {
+        if (a == b || !edgeKeys.add(edgeKey(a, b))) {
+            return false;
+        }
+        append(a, b);
+        append(b, a);
+        if (2 * edgeCount + 2 > edgeEnds.length) {
+            edgeEnds = Arrays.copyOf(edgeEnds, (int) Math.min(Integer.MAX_VALUE - 8, edgeEnds.length * 2L));
+        }
+        edgeEnds[(int) (2 * edgeCount)] = a;
+        edgeEnds[(int) (2 * edgeCount + 1)] = b;
+        edgeCount++;
+        return true;
+    }
+
+    public int edgeSource(int edge) {
+        return edgeEnds[2 * edge];
+    }
+
+    public int edgeTarget(int edge) {
+        return edgeEnds[2 * edge + 1];
+    }
+
+    public boolean hasEdge(int a, int b) {
+        return edgeKeys.contains(edgeKey(a, b));
+    }
+
+    private static long edgeKey(int a, int b) {
+        return (long) Math.min(a, b) << 32 | Math.max(a, b);
+    }
+
+    private void append(int node, int neighbor) {
+        int[] list = adjacency[node];
+        if (degree[node] == list.length) {
+            list = adjacency[node] = Arrays.copyOf(list, list.length * 2);
+            if (weights != null && weights[node] != null) {
+                weights[node] = Arrays.copyOf(weights[node], list.length);
+                Arrays.fill(weights[node], degree[node], list.length, Float.NaN);
+            }
+        }
+        list[degree[node]++] = neighbor;
+    }
+
+    // Weight of the index-th edge of node: the explicit weight if one was set,
+    // otherwise the Euclidean distance between the two ends.
+    public double weight(int node, int index) {
+        if (weights != null && weights[node] != null) {
+            float weight = weights[node][index];
+            if (weight == weight) {
+                return weight;
+            }
+        }
+        int neighbor = adjacency[node][index];
+        double dx = xs[node] - xs[neighbor], dy = ys[node] - ys[neighbor];
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    public double edgeWeight(int edge) {
+        int a = edgeSource(edge);
+        return weight(a, indexOf(a, edgeTarget(edge)));
+    }
+
+    // The weight set with setWeight, or NaN if the edge uses its Euclidean length.
+    public float explicitWeight(int edge) {
+        int a = edgeSource(edge);
+        if (weights == null || weights[a] == null) {
+            return Float.NaN;
+        }
+        return weights[a][indexOf(a, edgeTarget(edge))];
+    }
+
+    // Returns false if there is no edge between a and b. NaN restores the default weight.
+    public boolean setWeight(int a, int b, double weight) {
+        if (weight < 0) {
+            throw new IllegalArgumentException("Negative edge weight: " + weight);
+        }
+        if (!hasEdge(a, b)) {
+            return false;
+        }
+        if (weights == null) {
+            weights = new float[degree.length][];
+        }
+        setSlotWeight(a, indexOf(a, b), (float) weight);
+        setSlotWeight(b, indexOf(b, a), (float) weight);
+        return true;
+    }
+
+    public boolean hasExplicitWeights() {
+        return weights != null;
+    }
+
+    private void setSlotWeight(int node, int index, float weight) {
+        if (weights[node] == null) {
+            weights[node] = new float[adjacency[node].length];
+            Arrays.fill(weights[node], Float.NaN);
+        }
+        weights[node][index] = weight;
+    }
+
+    // Position of neighbor in node's adjacency list, or -1.
+    public int indexOf(int node, int neighbor) {
+        int[] list = adjacency[node];
+        for (int k = 0; k < degree[node]; k++) {
+            if (list[k] == neighbor) {
+                return k;
+            }
+        }
+        return -1;
+    }
+
+    public int nodeCount() {
+        return nodeCount;
+    }
+
+    public long edgeCount() {
+        return edgeCount;
+    }
+
+    public int degree(int node) {
+        return degree[node];
+    }
+
+    public int neighbor(int node, int index) {
+        return adjacency[node][index];
+    }
+
+    public int x(int node) {
+        return xs[node];
+    }
+
+    public int y(int node) {
+        return ys[node];
+    }
+
+    public void setPosition(int node, int x, int y) {
+        xs[node] = x;
+        ys[node] = y;
+    }
+
+    public void clear() {
+        nodeCount = 0;
+        edgeCount = 0;
+        Arrays.fill(adjacency, null);
+        Arrays.fill(degree, 0);
+        edgeKeys.clear();
+        weights = null;
+    }
+}
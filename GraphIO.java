@@ -0,0 +1,474 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Loads and saves Graphs as edge lists ("a b [weight]" per line, 0-based), DIMACS ("p",
+// "a"/"e" with an optional weight and optional "v id x y" records, 1-based) or a compact
+// little-endian binary format. Only explicit edge weights are stored; edges without one
+// keep their Euclidean length.
+// Input files are memory mapped and parsed byte by byte straight into the Graph, with
+// no String or edge object per line.
+final class GraphIO {
+    enum Format {
+        EDGE_LIST, DIMACS, BINARY;
+
+        static Format forPath(Path path) {
+            String name = path.getFileName().toString().toLowerCase();
+            if (name.endsWith(".bin") || name.endsWith(".avg")) {
+                return BINARY;
+            }
+            if (name.endsWith(".gr") || name.endsWith(".dimacs") || name.endsWith(".col")) {
+                return DIMACS;
+            }
+            return EDGE_LIST;
+        }
+    }
+
+    private static final int MAGIC = 0x52475641; // "AVGR" little-endian
+    // Version 2 appends an optional block of per-edge weights.
+    private static final int VERSION = 2;
+    private static final int LAYOUT_SPACING = 100;
+
+    private GraphIO() {
+    }
+
+    public static Graph read(Path path) throws IOException {
+        Graph graph = new Graph();
+        read(path, graph);
+        return graph;
+    }
+
+    // Appends the file's nodes and edges to graph. Formats without coordinates get a grid layout.
+    public static void read(Path path, Graph graph) throws IOException {
+        int first = graph.nodeCount();
+        boolean positioned;
+        try (MappedInput in = new MappedInput(path)) {
+            switch (Format.forPath(path)) {
+                case BINARY:
+                    readBinary(in, graph, first);
+                    positioned = true;
+                    break;
+                case DIMACS:
+                    positioned = readDimacs(in, graph, first);
+                    break;
+                default:
+                    readEdgeList(in, graph, first);
+                    positioned = false;
+                    break;
+            }
+        } catch (IllegalStateException e) {
+            // The graph's edge set is full.
+            throw new IOException("Graph too large: " + e.getMessage(), e);
+        }
+        if (!positioned) {
+            int columns = (int) Math.ceil(Math.sqrt(graph.nodeCount() - first));
+            for (int i = first; i < graph.nodeCount(); i++) {
+                int k = i - first;
+                graph.setPosition(i, LAYOUT_SPACING / 2 + k % columns * LAYOUT_SPACING,
+                        LAYOUT_SPACING / 2 + k / columns * LAYOUT_SPACING);
+            }
+        }
+    }
+
+    private static void readEdgeList(MappedInput in, Graph graph, int first) throws IOException {
+        for (int c = in.skipWhitespace(); c != -1; c = in.skipWhitespace()) {
+            if (c == '#' || c == '%') {
+                in.skipLine();
+                continue;
+            }
+            in.unread(c);
+            int a = nodeId(in, first, 0);
+            int b = nodeId(in, first, 0);
+            double weight = in.readWeight();
+            in.skipLine();
+            ensureNodes(graph, Math.max(a, b) + 1);
+            addEdge(graph, a, b, weight);
+        }
+    }
+
+    private static boolean readDimacs(MappedInput in, Graph graph, int first) throws IOException {
+        boolean positioned = false;
+        for (int c = in.skipWhitespace(); c != -1; c = in.skipWhitespace()) {
+            switch (c) {
+                case 'p': {
+                    in.skipWord();
+                    int nodes = nodeId(in, first, 0);
+                    long edges = in.readInt();
+                    if (edges < 0) {
+                        throw new IOException("Negative edge count at byte " + in.position());
+                    }
+                    graph.ensureCapacity(nodes, graph.edgeCount() + edges);
+                    ensureNodes(graph, nodes);
+                    break;
+                }
+                case 'a':
+                case 'e': {
+                    int a = nodeId(in, first, 1);
+                    int b = nodeId(in, first, 1);
+                    double weight = in.readWeight();
+                    ensureNodes(graph, Math.max(a, b) + 1);
+                    addEdge(graph, a, b, weight);
+                    break;
+                }
+                case 'v': {
+                    int node = nodeId(in, first, 1);
+                    int x = in.readInt();
+                    int y = in.readInt();
+                    ensureNodes(graph, node + 1);
+                    graph.setPosition(node, x, y);
+                    positioned = true;
+                    break;
+                }
+                default:
+                    break;
+            }
+            in.skipLine();
+        }
+        return positioned;
+    }
+
+    private static void readBinary(MappedInput in, Graph graph, int first) throws IOException {
+        if (in.readIntLE() != MAGIC) {
+            throw new IOException("Not a graph file");
+        }
+        int version = in.readIntLE();
+        if (version < 1 || version > VERSION) {
+            throw new IOException("Unsupported graph file version " + version);
+        }
+        int nodes = in.readIntLE();
+        long edges = (long) in.readIntLE() & 0xFFFFFFFFL | (long) in.readIntLE() << 32;
+        if (nodes < 0 || nodes > Integer.MAX_VALUE - first || edges < 0) {
+            throw new IOException("Invalid graph file header: " + nodes + " nodes, " + edges + " edges");
+        }
+        // Check the sections fit before allocating for them.
+        if (in.remaining() < 8L * nodes + 8L * edges) {
+            throw new IOException("Graph file truncated: " + nodes + " nodes and " + edges + " edges need "
+                    + (8L * nodes + 8L * edges) + " bytes after byte " + in.position() + ", found " + in.remaining());
+        }
+        graph.ensureCapacity(first + nodes, graph.edgeCount() + edges);
+        for (int i = 0; i < nodes; i++) {
+            int x = in.readIntLE();
+            graph.addNode(x, in.readIntLE());
+        }
+        // Self loops and duplicates are dropped, so remember which file edges did not become graph edges.
+        long[] dropped = new long[16];
+        int droppedCount = 0;
+        for (long e = 0; e < edges; e++) {
+            int a = in.readIntLE();
+            int b = in.readIntLE();
+            if (a < 0 || a >= nodes || b < 0 || b >= nodes) {
+                throw new IOException("Edge " + e + " at byte " + (in.position() - 8) + " joins " + a + " and " + b
+                        + ", but the file has " + nodes + " nodes");
+            }
+            if (!graph.addEdge(first + a, first + b)) {
+                if (droppedCount == dropped.length) {
+                    dropped = java.util.Arrays.copyOf(dropped, droppedCount * 2);
+                }
+                dropped[droppedCount++] = e;
+            }
+        }
+        if (version >= 2 && in.readIntLE() != 0) {
+            if (in.remaining() < 4L * edges) {
+                throw new IOException("Graph file truncated: " + edges + " edge weights need " + 4L * edges
+                        + " bytes after byte " + in.position() + ", found " + in.remaining());
+            }
+            long edge = graph.edgeCount() - (edges - droppedCount);
+            for (long e = 0, d = 0; e < edges; e++) {
+                float weight = Float.intBitsToFloat(in.readIntLE());
+                if (d < droppedCount && dropped[(int) d] == e) {
+                    d++;
+                    continue;
+                }
+                if (weight == weight) {
+                    graph.setWeight(graph.edgeSource((int) edge), graph.edgeTarget((int) edge), weight);
+                }
+                edge++;
+            }
+        }
+    }
+
+    // Reads a node id from text and shifts it to a graph id; base is the file's first id.
+    private static int nodeId(MappedInput in, int first, int base) throws IOException {
+        long at = in.position();
+        int id = in.readInt();
+        if (id < base || id - base > Integer.MAX_VALUE - 1 - first) {
+            throw new IOException("Invalid node id " + id + " at byte " + at);
+        }
+        return first + id - base;
+    }
+
+    private static void addEdge(Graph graph, int a, int b, double weight) {
+        if (graph.addEdge(a, b) && weight == weight) {
+            graph.setWeight(a, b, weight);
+        }
+    }
+
+    private static void ensureNodes(Graph graph, int count) {
+        while (graph.nodeCount() < count) {
+            graph.addNode();
+        }
+    }
+
+    public static void write(Graph graph, Path path) throws IOException {
+        try (Output out = new Output(path)) {
+            switch (Format.forPath(path)) {
+                case BINARY:
+                    out.intLE(MAGIC).intLE(VERSION).intLE(graph.nodeCount());
+                    out.intLE((int) graph.edgeCount()).intLE((int) (graph.edgeCount() >>> 32));
+                    for (int i = 0; i < graph.nodeCount(); i++) {
+                        out.intLE(graph.x(i)).intLE(graph.y(i));
+                    }
+                    for (int e = 0; e < graph.edgeCount(); e++) {
+                        out.intLE(graph.edgeSource(e)).intLE(graph.edgeTarget(e));
+                    }
+                    out.intLE(graph.hasExplicitWeights() ? 1 : 0);
+                    for (int e = 0; graph.hasExplicitWeights() && e < graph.edgeCount(); e++) {
+                        out.intLE(Float.floatToRawIntBits(graph.explicitWeight(e)));
+                    }
+                    break;
+                case DIMACS:
+                    out.ascii("p edge ").number(graph.nodeCount()).ascii(" ").number(graph.edgeCount()).ascii("\n");
+                    for (int i = 0; i < graph.nodeCount(); i++) {
+                        out.ascii("v ").number(i + 1).ascii(" ").number(graph.x(i)).ascii(" ").number(graph.y(i))
+                                .ascii("\n");
+                    }
+                    for (int e = 0; e < graph.edgeCount(); e++) {
+                        out.ascii("e ").number(graph.edgeSource(e) + 1L).ascii(" ").number(graph.edgeTarget(e) + 1L);
+                        out.weight(graph, e).ascii("\n");
+                    }
+                    break;
+                default:
+                    out.ascii("# nodes ").number(graph.nodeCount()).ascii(" edges ").number(graph.edgeCount())
+                            .ascii("\n");
+                    for (int e = 0; e < graph.edgeCount(); e++) {
+                        out.number(graph.edgeSource(e)).ascii(" ").number(graph.edgeTarget(e));
+                        out.weight(graph, e).ascii("\n");
+                    }
+                    break;
+            }
+        }
+    }
+
+    // Sequential reader over a file mapped in 1 GB windows, with one byte of push-back.
+    private static final class MappedInput implements AutoCloseable {
+        private static final long WINDOW = 1L << 30;
+
+        private final FileChannel channel;
+        private final long size;
+        private long windowStart;
+        private MappedByteBuffer window;
+        private int pushback = -2;
+
+        MappedInput(Path path) throws IOException {
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+            size = channel.size();
+            map(0);
+        }
+
+        private void map(long start) throws IOException {
+            windowStart = start;
+            window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(WINDOW, size - start));
+            window.order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        int read() throws IOException {
+            if (pushback != -2) {
+                int c = pushback;
+                pushback = -2;
+                return c;
+            }
+            if (!window.hasRemaining()) {
+                long next = windowStart + window.limit();
+                if (next >= size) {
+                    return -1;
+                }
+                map(next);
+            }
+            return window.get() & 0xFF;
+        }
+
+        void unread(int c) {
+            pushback = c;
+        }
+
+        int skipWhitespace() throws IOException {
+            int c = read();
+            while (c == ' ' || c == '\t' || c == '\r' || c == '\n') {
+                c = read();
+            }
+            return c;
+        }
+
+        void skipLine() throws IOException {
+            int c = read();
+            while (c != '\n' && c != -1) {
+                c = read();
+            }
+        }
+
+        void skipWord() throws IOException {
+            int c = read();
+            while (c == ' ' || c == '\t') {
+                c = read();
+            }
+            while (c != ' ' && c != '\t' && c != '\n' && c != -1) {
+                c = read();
+            }
+            unread(c);
+        }
+
+        int readInt() throws IOException {
+            int c = read();
+            while (c == ' ' || c == '\t') {
+                c = read();
+            }
+            boolean negative = c == '-';
+            if (negative) {
+                c = read();
+            }
+            if (c < '0' || c > '9') {
+                throw new IOException("Expected a number at byte " + position());
+            }
+            long value = 0;
+            while (c >= '0' && c <= '9') {
+                value = value * 10 + (c - '0');
+                if (value > Integer.MAX_VALUE) {
+                    throw new IOException("Number out of range at byte " + position());
+                }
+                c = read();
+            }
+            unread(c);
+            return (int) (negative ? -value : value);
+        }
+
+        // Optional decimal after the numbers on a line, or NaN if the line has none.
+        double readWeight() throws IOException {
+            int c = read();
+            while (c == ' ' || c == '\t') {
+                c = read();
+            }
+            if ((c < '0' || c > '9') && c != '.') {
+                unread(c);
+                return Double.NaN;
+            }
+            double value = 0;
+            while (c >= '0' && c <= '9') {
+                value = value * 10 + (c - '0');
+                c = read();
+            }
+            if (c == '.') {
+                double scale = 1;
+                for (c = read(); c >= '0' && c <= '9'; c = read()) {
+                    scale /= 10;
+                    value += (c - '0') * scale;
+                }
+            }
+            unread(c);
+            return value;
+        }
+
+        int readIntLE() throws IOException {
+            if (pushback == -2 && window.remaining() >= 4) {
+                return window.getInt();
+            }
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 8) {
+                int c = read();
+                if (c == -1) {
+                    throw new IOException("Unexpected end of graph file");
+                }
+                value |= c << shift;
+            }
+            return value;
+        }
+
+        long position() {
+            return windowStart + window.position() - (pushback >= 0 ? 1 : 0);
+        }
+
+        long remaining() {
+            return size - position();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    // Buffered channel writer that formats numbers without going through String.
+    private static final class Output implements AutoCloseable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+        private final byte[] digits = new byte[20];
+
+        Output(Path path) throws IOException {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                buffer.clear();
+            }
+        }
+
+        Output intLE(int value) throws IOException {
+            ensure(4);
+            buffer.putInt(value);
+            return this;
+        }
+
+        Output ascii(String text) throws IOException {
+            ensure(text.length());
+            for (int i = 0; i < text.length(); i++) {
+                buffer.put((byte) text.charAt(i));
+            }
+            return this;
+        }
+
+        Output number(long value) throws IOException {
+            ensure(21);
+            if (value < 0) {
+                buffer.put((byte) '-');
+                value = -value;
+            }
+            int count = 0;
+            do {
+                digits[count++] = (byte) ('0' + value % 10);
+                value /= 10;
+            } while (value != 0);
+            while (count > 0) {
+                buffer.put(digits[--count]);
+            }
+            return this;
+        }
+
+        // " weight" for edges with an explicit weight, nothing otherwise.
+        Output weight(Graph graph, int edge) throws IOException {
+            float weight = graph.explicitWeight(edge);
+            if (weight != weight) {
+                return this;
+            }
+            ascii(" ");
+            return weight == (long) weight ? number((long) weight) : ascii(Float.toString(weight));
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                ensure(buffer.capacity());
+            } finally {
+                channel.close();
+            }
+        }
+    }
+}
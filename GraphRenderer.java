@@ -0,0 +1,229 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.function.IntFunction;
+
+// Draws a Graph in two layers under a zoom/pan viewport. Edges go to a cached
+// offscreen image that is only redrawn when the structure or the zoom changes (a pan
+// scrolls it and draws just the exposed strips);
+// nodes are drawn over it on every paint but only inside the clip, so a node state
+// change can repaint just its own bounds. Zoomed out, nodes drop their labels and
+// then their outlines, and below that are written straight into a raster.
+final class GraphRenderer {
+    private static final Font LABEL_FONT = new Font("Arial", Font.BOLD, 20);
+    private static final double MIN_SCALE = 0.005;
+    private static final double MAX_SCALE = 20;
+    private static final int LABEL_MIN_SIZE = 24;
+    private static final int OUTLINE_MIN_SIZE = 6;
+
+    private final int nodeSize;
+    private final Color background;
+    private double scale = 1;
+    private double offsetX, offsetY;
+    private BufferedImage edgeLayer;
+    private BufferedImage nodeLayer;
+    private boolean edgesValid;
+    // Pan distance not yet applied to the edge layer.
+    private int shiftX, shiftY;
+    private Font labelFont = LABEL_FONT;
+    private FontMetrics labelMetrics;
+    private final Rectangle area = new Rectangle();
+
+    // nodeSize is the node diameter in world units.
+    public GraphRenderer(int nodeSize, Color background) {
+        this.nodeSize = nodeSize;
+        this.background = background;
+    }
+
+    // A renderer showing the same view with its own layer caches, for painting off the EDT.
+    public GraphRenderer copyView() {
+        GraphRenderer copy = new GraphRenderer(nodeSize, background);
+        copy.scale = scale;
+        copy.offsetX = offsetX;
+        copy.offsetY = offsetY;
+        copy.labelFont = labelFont;
+        return copy;
+    }
+
+    public int toWorldX(int screenX) {
+        return (int) Math.floor((screenX - offsetX) / scale);
+    }
+
+    public int toWorldY(int screenY) {
+        return (int) Math.floor((screenY - offsetY) / scale);
+    }
+
+    private int toScreenX(int worldX) {
+        return (int) Math.round(worldX * scale + offsetX);
+    }
+
+    private int toScreenY(int worldY) {
+        return (int) Math.round(worldY * scale + offsetY);
+    }
+
+    // Zooms by factor keeping the world point under (screenX, screenY) fixed.
+    public void zoom(double factor, int screenX, int screenY) {
+        double next = Math.max(MIN_SCALE, Math.min(MAX_SCALE, scale * factor));
+        offsetX = screenX - (screenX - offsetX) * next / scale;
+        offsetY = screenY - (screenY - offsetY) * next / scale;
+        scale = next;
+        labelFont = LABEL_FONT.deriveFont((float) (LABEL_FONT.getSize2D() * scale));
+        labelMetrics = null;
+        edgesValid = false;
+    }
+
+    public void pan(int dx, int dy) {
+        offsetX += dx;
+        offsetY += dy;
+        shiftX += dx;
+        shiftY += dy;
+    }
+
+    public void invalidateEdges() {
+        edgesValid = false;
+    }
+
+    // Draws a new edge straight onto the cached layer instead of rebuilding it.
+    public void edgeAdded(Graph graph, int edge) {
+        if (edgesValid && shiftX == 0 && shiftY == 0) {
+            Graphics g = edgeLayer.getGraphics();
+            g.setColor(Color.BLACK);
+            drawEdge(g, graph, edge);
+            g.dispose();
+        }
+    }
+
+    // Screen bounds covering the node and its selection ring.
+    public Rectangle nodeBounds(Graph graph, int node, Rectangle bounds) {
+        int reach = (int) Math.ceil(nodeSize * scale) + 1;
+        bounds.setBounds(toScreenX(graph.x(node)) - reach, toScreenY(graph.y(node)) - reach, 2 * reach, 2 * reach);
+        return bounds;
+    }
+
+    public void paint(Graphics g, Graph graph, SpatialGrid index, IntFunction<Color> colors, int selected, int w,
+            int h) {
+        if (w <= 0 || h <= 0) {
+            return;
+        }
+        if (edgeLayer == null || edgeLayer.getWidth() != w || edgeLayer.getHeight() != h) {
+            edgeLayer = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+            nodeLayer = null;
+            edgesValid = false;
+        }
+        if (edgesValid && (shiftX != 0 || shiftY != 0) && Math.abs(shiftX) < w && Math.abs(shiftY) < h) {
+            Graphics layer = edgeLayer.getGraphics();
+            layer.copyArea(0, 0, w, h, shiftX, shiftY);
+            if (shiftX != 0) {
+                drawEdges(layer, graph, index, shiftX > 0 ? 0 : w + shiftX, 0, Math.abs(shiftX), h);
+            }
+            if (shiftY != 0) {
+                drawEdges(layer, graph, index, 0, shiftY > 0 ? 0 : h + shiftY, w, Math.abs(shiftY));
+            }
+            layer.dispose();
+        } else if (!edgesValid || shiftX != 0 || shiftY != 0) {
+            Graphics layer = edgeLayer.getGraphics();
+            drawEdges(layer, graph, index, 0, 0, w, h);
+            layer.dispose();
+            edgesValid = true;
+        }
+        shiftX = shiftY = 0;
+
+        Rectangle clip = g.getClipBounds();
+        if (clip == null) {
+            clip = new Rectangle(0, 0, w, h);
+        }
+        int size = Math.max(1, (int) Math.round(nodeSize * scale));
+        if (size < OUTLINE_MIN_SIZE) {
+            paintNodePixels(g, graph, index, colors, clip.intersection(new Rectangle(0, 0, w, h)), size, w);
+            if (selected >= 0) {
+                int x = toScreenX(graph.x(selected)), y = toScreenY(graph.y(selected));
+                g.setColor(Color.BLUE);
+                g.drawOval(x - size, y - size, size * 2, size * 2);
+            }
+            return;
+        }
+        g.drawImage(edgeLayer, 0, 0, null);
+
+        boolean labels = size >= LABEL_MIN_SIZE;
+        if (labels) {
+            g.setFont(labelFont);
+            if (labelMetrics == null) {
+                labelMetrics = g.getFontMetrics(labelFont);
+            }
+        }
+        Rectangle visible = clip;
+        index.nodesIn(worldArea(clip.x, clip.y, clip.width, clip.height, nodeSize), node -> {
+            int x = toScreenX(graph.x(node)), y = toScreenY(graph.y(node));
+            if (x + size < visible.x || y + size < visible.y || x - size > visible.x + visible.width
+                    || y - size > visible.y + visible.height) {
+                return;
+            }
+            g.setColor(colors.apply(node));
+            g.fillOval(x - size / 2, y - size / 2, size, size);
+            g.setColor(Color.BLACK);
+            g.drawOval(x - size / 2, y - size / 2, size, size);
+            if (labels) {
+                g.setColor(Color.WHITE);
+                String text = Integer.toString(node + 1);
+                g.drawString(text, x - labelMetrics.stringWidth(text) / 2, y + labelMetrics.getHeight() / 4);
+            }
+            if (node == selected) {
+                g.setColor(Color.BLUE);
+                g.drawOval(x - size, y - size, size * 2, size * 2);
+            }
+        });
+    }
+
+    // Tiny nodes are squares written into a copy of the edge layer, then blitted once;
+    // going through Graphics per node dominates the frame time at this zoom.
+    private void paintNodePixels(Graphics g, Graph graph, SpatialGrid index, IntFunction<Color> colors,
+            Rectangle clip, int size, int w) {
+        if (clip.isEmpty()) {
+            return;
+        }
+        if (nodeLayer == null) {
+            nodeLayer = new BufferedImage(w, edgeLayer.getHeight(), BufferedImage.TYPE_INT_RGB);
+        }
+        int[] edges = ((DataBufferInt) edgeLayer.getRaster().getDataBuffer()).getData();
+        int[] pixels = ((DataBufferInt) nodeLayer.getRaster().getDataBuffer()).getData();
+        int minX = clip.x, minY = clip.y, maxX = clip.x + clip.width, maxY = clip.y + clip.height;
+        for (int y = minY; y < maxY; y++) {
+            System.arraycopy(edges, y * w + minX, pixels, y * w + minX, clip.width);
+        }
+        index.nodesIn(worldArea(clip.x, clip.y, clip.width, clip.height, nodeSize), node -> {
+            int left = toScreenX(graph.x(node)) - size / 2, top = toScreenY(graph.y(node)) - size / 2;
+            int fromX = Math.max(minX, left), toX = Math.min(maxX, left + size);
+            int fromY = Math.max(minY, top), toY = Math.min(maxY, top + size);
+            if (fromX >= toX || fromY >= toY) {
+                return;
+            }
+            int rgb = colors.apply(node).getRGB();
+            for (int y = fromY; y < toY; y++) {
+                for (int x = fromX; x < toX; x++) {
+                    pixels[y * w + x] = rgb;
+                }
+            }
+        });
+        g.drawImage(nodeLayer, 0, 0, null);
+    }
+
+    private void drawEdges(Graphics layer, Graph graph, SpatialGrid index, int x, int y, int w, int h) {
+        layer.setClip(x, y, w, h);
+        layer.setColor(background);
+        layer.fillRect(x, y, w, h);
+        layer.setColor(Color.BLACK);
+        // A drawn line can stray a pixel from the exact segment the index walks.
+        index.edgesIn(worldArea(x, y, w, h, (int) Math.ceil(1 / scale)), edge -> drawEdge(layer, graph, edge));
+    }
+
+    private void drawEdge(Graphics g, Graph graph, int edge) {
+        int a = graph.edgeSource(edge), b = graph.edgeTarget(edge);
+        g.drawLine(toScreenX(graph.x(a)), toScreenY(graph.y(a)), toScreenX(graph.x(b)), toScreenY(graph.y(b)));
+    }
+
+    private Rectangle worldArea(int x, int y, int w, int h, int margin) {
+        int minX = toWorldX(x) - margin, minY = toWorldY(y) - margin;
+        area.setBounds(minX, minY, toWorldX(x + w) + margin + 1 - minX, toWorldY(y + h) + margin + 1 - minY);
+        return area;
+    }
+}
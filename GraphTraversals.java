@@ -0,0 +1,64 @@
+// Headless BFS/DFS over a Graph. Both fill order with the nodes in visiting order
+// and return how many were reached; edgeScans counts every neighbor inspected.
+final class GraphTraversals {
+    // Node marks written by traversal traces: VISITED for a reached or settled node,
+    // ON_PATH for a node on the shortest path and LEVEL + d for a node at BFS depth d.
+    static final int VISITED = 1, ON_PATH = 2, LEVEL = 3;
+
+    private long edgeScans;
+
+    public long edgeScans() {
+        return edgeScans;
+    }
+
+    public int bfs(Graph graph, int start, int[] order) {
+        int n = graph.nodeCount();
+        boolean[] visited = new boolean[n];
+        int head = 0, tail = 0;
+        order[tail++] = start;
+        visited[start] = true;
+        while (head < tail) {
+            int node = order[head++];
+            for (int k = 0, degree = graph.degree(node); k < degree; k++) {
+                int neighbor = graph.neighbor(node, k);
+                edgeScans++;
+                if (!visited[neighbor]) {
+                    visited[neighbor] = true;
+                    order[tail++] = neighbor;
+                }
+            }
+        }
+        return tail;
+    }
+
+    public int dfs(Graph graph, int start, int[] order) {
+        int n = graph.nodeCount();
+        boolean[] visited = new boolean[n];
+        // Explicit stack of (node, next neighbor index) keeps memory at O(V).
+        int[] stackNode = new int[n];
+        int[] stackNext = new int[n];
+        int depth = 0, count = 0;
+        stackNode[depth++] = start;
+        visited[start] = true;
+        order[count++] = start;
+        while (depth > 0) {
+            int node = stackNode[depth - 1];
+            int k = stackNext[depth - 1];
+            if (k == graph.degree(node)) {
+                depth--;
+                continue;
+            }
+            stackNext[depth - 1] = k + 1;
+            int neighbor = graph.neighbor(node, k);
+            edgeScans++;
+            if (!visited[neighbor]) {
+                visited[neighbor] = true;
+                order[count++] = neighbor;
+                stackNode[depth] = neighbor;
+                stackNext[depth] = 0;
+                depth++;
+            }
+        }
+        return count;
+    }
+}
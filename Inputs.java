@@ -0,0 +1,43 @@
+import java.util.SplittableRandom;
+
+final class Inputs {
+    static final String[] DISTRIBUTIONS = { "random", "sorted", "reversed", "few-unique", "organ-pipe" };
+
+    private Inputs() {
+    }
+
+    public static int[] generate(String distribution, int size, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        int[] array = new int[size];
+        switch (distribution) {
+            case "random":
+                for (int i = 0; i < size; i++) {
+                    array[i] = random.nextInt();
+                }
+                break;
+            case "sorted":
+                for (int i = 0; i < size; i++) {
+                    array[i] = i;
+                }
+                break;
+            case "reversed":
+                for (int i = 0; i < size; i++) {
+                    array[i] = size - i;
+                }
+                break;
+            case "few-unique":
+                for (int i = 0; i < size; i++) {
+                    array[i] = random.nextInt(8);
+                }
+                break;
+            case "organ-pipe":
+                for (int i = 0; i < size; i++) {
+                    array[i] = Math.min(i, size - 1 - i);
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown distribution: " + distribution);
+        }
+        return array;
+    }
+}
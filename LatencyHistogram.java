@@ -0,0 +1,94 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Fixed-bucket latency histogram in the HdrHistogram layout: durations in microseconds
+// fall into buckets that are linear below 2^SUB_BITS and then split every power of two
+// into 2^(SUB_BITS - 1) equal parts, so each bucket is within 1/64 of its value and the
+// whole range up to about 19 hours fits in under 2,000 counters. Recording is a few
+// shifts and an atomic increment, so it can sit in paint and event code; readers on
+// other threads (JMX, the HUD) see a slightly moving but never torn picture.
+final class LatencyHistogram implements LatencyHistogramMBean {
+    private static final int SUB_BITS = 7;
+    private static final long MAX_MICROS = (1L << 36) - 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(index(MAX_MICROS) + 1);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public void record(long nanos) {
+        nanos = Math.max(0, nanos);
+        counts.incrementAndGet(index(Math.min(MAX_MICROS, nanos / 1000)));
+        count.incrementAndGet();
+        totalNanos.addAndGet(nanos);
+        maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    private static int index(long micros) {
+        if (micros < (1 << SUB_BITS)) {
+            return (int) micros;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(micros) - (SUB_BITS - 1);
+        return (shift << (SUB_BITS - 1)) + (int) (micros >>> shift);
+    }
+
+    // The smallest value that lands in bucket index.
+    private static long lowestValue(int index) {
+        if (index < (1 << SUB_BITS)) {
+            return index;
+        }
+        int shift = (index >>> (SUB_BITS - 1)) - 1;
+        return (long) (index - (shift << (SUB_BITS - 1))) << shift;
+    }
+
+    // The top of the bucket holding the given fraction of recorded values, in milliseconds.
+    public double percentileMillis(double fraction) {
+        long total = count.get();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(fraction * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(lowestValue(i + 1) - 1, maxNanos.get() / 1000) / 1e3;
+            }
+        }
+        return getMaxMillis();
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public double getMeanMillis() {
+        long total = count.get();
+        return total == 0 ? 0 : totalNanos.get() / 1e6 / total;
+    }
+
+    public double getP50Millis() {
+        return percentileMillis(0.5);
+    }
+
+    public double getP90Millis() {
+        return percentileMillis(0.9);
+    }
+
+    public double getP99Millis() {
+        return percentileMillis(0.99);
+    }
+
+    public double getMaxMillis() {
+        return maxNanos.get() / 1e6;
+    }
+
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+        count.set(0);
+        totalNanos.set(0);
+        maxNanos.set(0);
+    }
+}
@@ -0,0 +1,16 @@
+// JMX view of a LatencyHistogram. JMX only accepts public management interfaces.
+public interface LatencyHistogramMBean {
+    long getCount();
+
+    double getMeanMillis();
+
+    double getP50Millis();
+
+    double getP90Millis();
+
+    double getP99Millis();
+
+    double getMaxMillis();
+
+    void reset();
+}
@@ -0,0 +1,117 @@
+import java.util.Arrays;
+
+// Open-addressing set of longs with linear probing. Long.MIN_VALUE marks an empty
+// slot and is tracked separately, so every long value can be stored.
+final class LongHashSet {
+    private static final long EMPTY = Long.MIN_VALUE;
+    // The largest power-of-two long[] a JVM will allocate, kept at most half full.
+    private static final int MAX_CAPACITY = 1 << 30;
+    static final int MAX_SIZE = MAX_CAPACITY / 2;
+
+    private long[] slots;
+    private int size;
+    private boolean containsEmpty;
+
+    public LongHashSet() {
+        this(16);
+    }
+
+    public LongHashSet(long expected) {
+        slots = new long[capacityFor(expected)];
+        Arrays.fill(slots, EMPTY);
+    }
+
+    public boolean add(long key) {
+        if (key == EMPTY) {
+            if (containsEmpty) {
+                return false;
+            }
+            checkRoom();
+            containsEmpty = true;
+            size++;
+            return true;
+        }
+        int mask = slots.length - 1;
+        for (int i = mix(key) & mask;; i = (i + 1) & mask) {
+            long slot = slots[i];
+            if (slot == key) {
+                return false;
+            }
+            if (slot == EMPTY) {
+                checkRoom();
+                slots[i] = key;
+                if (++size * 2 > slots.length) {
+                    rehash(slots.length * 2);
+                }
+                return true;
+            }
+        }
+    }
+
+    public boolean contains(long key) {
+        if (key == EMPTY) {
+            return containsEmpty;
+        }
+        int mask = slots.length - 1;
+        for (int i = mix(key) & mask;; i = (i + 1) & mask) {
+            long slot = slots[i];
+            if (slot == key) {
+                return true;
+            }
+            if (slot == EMPTY) {
+                return false;
+            }
+        }
+    }
+
+    public void ensureCapacity(long expected) {
+        if (expected * 2 > slots.length) {
+            rehash(capacityFor(expected));
+        }
+    }
+
+    // Smallest power of two at least twice expected, so the table stays at most half full.
+    private static int capacityFor(long expected) {
+        if (expected > MAX_SIZE) {
+            throw new IllegalStateException("Set limit of " + MAX_SIZE + " keys exceeded: " + expected + " expected");
+        }
+        return Integer.highestOneBit((int) Math.max(4, expected * 2 - 1)) << 1;
+    }
+
+    private void checkRoom() {
+        if (size == MAX_SIZE) {
+            throw new IllegalStateException("Set limit of " + MAX_SIZE + " keys reached");
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        Arrays.fill(slots, EMPTY);
+        size = 0;
+        containsEmpty = false;
+    }
+
+    private void rehash(int capacity) {
+        long[] old = slots;
+        slots = new long[capacity];
+        Arrays.fill(slots, EMPTY);
+        int mask = capacity - 1;
+        for (long key : old) {
+            if (key != EMPTY) {
+                int i = mix(key) & mask;
+                while (slots[i] != EMPTY) {
+                    i = (i + 1) & mask;
+                }
+                slots[i] = key;
+            }
+        }
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -1,730 +1,2235 @@
-import javax.swing.*;
-import java.awt.*;
-import java.awt.event.*;
-import java.util.ArrayList;
-import java.util.LinkedList;
-import java.util.Queue;
-import java.util.Stack;
-
-public class MainVisualizer extends JFrame {
-    private AlgorithmVisualizer algorithmVisualizer;
-    private GraphTraversalVisualizer graphTraversalVisualizer;
-    private JComboBox<String> visualizerSelector;
-
-    public MainVisualizer() {
-        setTitle("Visualizer");
-        setSize(800, 600);
-        setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-
-        algorithmVisualizer = new AlgorithmVisualizer(6);
-        graphTraversalVisualizer = new GraphTraversalVisualizer();
-
-        String[] visualizerOptions = { "Algorithm Visualizer", "Graph Traversal Visualizer" };
-        visualizerSelector = new JComboBox<>(visualizerOptions);
-        visualizerSelector.addActionListener(e -> switchVisualizer());
-
-        setLayout(new BorderLayout());
-        add(visualizerSelector, BorderLayout.NORTH);
-        add(algorithmVisualizer, BorderLayout.CENTER);
-
-        setVisible(true);
-    }
-
-    private void switchVisualizer() {
-        String selected = (String) visualizerSelector.getSelectedItem();
-        if ("Algorithm Visualizer".equals(selected)) {
-            remove(graphTraversalVisualizer);
-            add(algorithmVisualizer, BorderLayout.CENTER);
-        } else {
-            remove(algorithmVisualizer);
-            add(graphTraversalVisualizer, BorderLayout.CENTER);
-        }
-        revalidate();
-        repaint();
-    }
-
-    public static void main(String[] args) {
-        SwingUtilities.invokeLater(MainVisualizer::new);
-    }
-}
-
-class AlgorithmVisualizer extends JPanel {
-    private int[] array;
-    private int currentIndex = -1;
-    private int nextIndex = -1;
-    public boolean stop = true;
-    private final int delay = 1000;
-    private JPanel controlPanel;
-    private JButton bubbleSortButton, selectionSortButton, insertionSortButton, mergeSortButton, quickSortButton,
-            stopButton, resetButton;
-    private JComboBox<Integer> sizeSelector;
-
-    public AlgorithmVisualizer(int size) {
-        array = new int[size];
-        setArraySize(size);
-        createControlPanel();
-    }
-
-    private void createControlPanel() {
-        controlPanel = new JPanel();
-
-        bubbleSortButton = new JButton("Bubble Sort");
-        selectionSortButton = new JButton("Selection Sort");
-        insertionSortButton = new JButton("Insertion Sort");
-        mergeSortButton = new JButton("Merge Sort");
-        quickSortButton = new JButton("Quick Sort");
-        stopButton = new JButton("stop");
-
-        resetButton = new JButton("Reset");
-
-        sizeSelector = new JComboBox<>(new Integer[] { 6, 10, 20, 30, 40, 50, 60, 70, 80, 90, 100 });
-        sizeSelector.addActionListener(e -> {
-            int selectedSize = (int) sizeSelector.getSelectedItem();
-            setArraySize(selectedSize);
-        });
-
-        bubbleSortButton.addActionListener(e -> bubbleSort());
-        selectionSortButton.addActionListener(e -> selectionSort());
-        insertionSortButton.addActionListener(e -> insertionSort());
-        mergeSortButton.addActionListener(e -> mergeSort());
-        quickSortButton.addActionListener(e -> quickSort());
-        stopButton.addActionListener(e -> stopSorting());
-
-        resetButton.addActionListener(e -> setArraySize((int) sizeSelector.getSelectedItem()));
-
-        controlPanel.add(sizeSelector);
-        controlPanel.add(bubbleSortButton);
-        controlPanel.add(selectionSortButton);
-        controlPanel.add(insertionSortButton);
-        controlPanel.add(mergeSortButton);
-        controlPanel.add(quickSortButton);
-        controlPanel.add(stopButton);
-
-        controlPanel.add(resetButton);
-
-        setLayout(new BorderLayout());
-        add(controlPanel, BorderLayout.SOUTH); // Place the control panel at the bottom
-    }
-
-    private void setArraySize(int size) {
-        stop = true;
-        array = new int[size];
-        for (int i = 0; i < array.length; i++) {
-            array[i] = (int) (Math.random() * 400 + 50);
-        }
-        currentIndex = -1;
-        nextIndex = -1;
-        repaint();
-    }
-
-    
-    protected void paintComponent(Graphics g) {
-        super.paintComponent(g);
-        for (int i = 0; i < array.length; i++) {
-            if (i == currentIndex) {
-                g.setColor(Color.RED);
-            } else if (i == nextIndex) {
-                g.setColor(Color.BLUE);
-            } else {
-                g.setColor(new Color(255, 105, 180));
-            }
-
-            int rectWidth = getWidth() / array.length;
-            int rectHeight = array[i];
-            int x = i * rectWidth;
-            int y = getHeight() - rectHeight;
-
-            g.fillRect(x, y, rectWidth, rectHeight);
-
-            g.setColor(Color.BLACK);
-            g.setFont(new Font("Arial", Font.BOLD, 20));
-            String value = Integer.toString(array[i]);
-            int textX = x + rectWidth / 2 - g.getFontMetrics().stringWidth(value) / 2;
-            int textY = y - 6;
-            g.drawString(value, textX, textY);
-        }
-    }
-
-    public void bubbleSort() {
-        stop = false;
-        Thread bubbleSortThread = new Thread(() -> {
-            boolean swapped;
-            for (int i = 0; i < array.length - 1; i++) {
-                if (stop) {
-                    return;
-                }
-                swapped = false;
-                for (int j = 0; j < array.length - 1 - i; j++) {
-                    if (stop) {
-                        return;
-                    }
-
-                    currentIndex = j;
-                    nextIndex = j + 1;
-                    SwingUtilities.invokeLater(this::repaint);
-
-                    if (array[j] > array[j + 1]) {
-                        swap(j, j + 1);
-                        swapped = true;
-                    }
-
-                    try {
-                        Thread.sleep(delay);
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                        return;
-                    }
-                }
-
-                if (!swapped) {
-                    break;
-                }
-
-                SwingUtilities.invokeLater(this::repaint);
-            }
-
-            currentIndex = -1;
-            nextIndex = -1;
-            SwingUtilities.invokeLater(this::repaint);
-        });
-        bubbleSortThread.start();
-    }
-
-    public void selectionSort() {
-        stop = false;
-        Thread selectionSortThread = new Thread(() -> {
-            for (int i = 0; i < array.length - 1; i++) {
-                if (stop) {
-                    return;
-                }
-                int minIndex = i;
-                for (int j = i + 1; j < array.length; j++) {
-                    if (stop) {
-                        return;
-                    }
-
-                    currentIndex = i;
-                    nextIndex = j;
-                    SwingUtilities.invokeLater(this::repaint);
-
-                    if (array[j] < array[minIndex]) {
-                        minIndex = j;
-                    }
-
-                    try {
-                        Thread.sleep(delay);
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                        return;
-                    }
-                }
-
-                if (i != minIndex) {
-                    swap(i, minIndex);
-                }
-
-                SwingUtilities.invokeLater(this::repaint);
-            }
-
-            currentIndex = -1;
-            nextIndex = -1;
-            SwingUtilities.invokeLater(this::repaint);
-        });
-        selectionSortThread.start();
-    }
-
-    public void insertionSort() {
-        stop = false;
-        Thread insertionSortThread = new Thread(() -> {
-            for (int i = 1; i < array.length; i++) {
-                if (stop) {
-                    return;
-                }
-                int key = array[i];
-                int j = i - 1;
-
-                currentIndex = i;
-                nextIndex = j;
-                SwingUtilities.invokeLater(this::repaint);
-
-                while (j >= 0 && array[j] > key) {
-                    if (stop) {
-                        return;
-                    }
-
-                    array[j + 1] = array[j];
-                    currentIndex = j;
-                    nextIndex = j + 1;
-                    SwingUtilities.invokeLater(this::repaint);
-
-                    try {
-                        Thread.sleep(delay);
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                        return;
-                    }
-                    j--;
-                }
-                array[j + 1] = key;
-
-                SwingUtilities.invokeLater(this::repaint);
-
-                try {
-                    Thread.sleep(delay);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    return;
-                }
-            }
-
-            currentIndex = -1;
-            nextIndex = -1;
-            SwingUtilities.invokeLater(this::repaint);
-        });
-        insertionSortThread.start();
-    }
-
-    public void mergeSort() {
-        stop = false;
-        Thread mergeSortThread = new Thread(() -> {
-            if (stop) {
-                return;
-            }
-            mergeSortHelper(0, array.length - 1);
-            currentIndex = -1;
-            nextIndex = -1;
-            SwingUtilities.invokeLater(this::repaint);
-        });
-        mergeSortThread.start();
-    }
-
-    private void mergeSortHelper(int left, int right) {
-        if (left < right) {
-            int mid = left + (right - left) / 2;
-            mergeSortHelper(left, mid);
-            mergeSortHelper(mid + 1, right);
-            merge(left, mid, right);
-        }
-    }
-
-    private void merge(int left, int mid, int right) {
-        int n1 = mid - left + 1;
-        int n2 = right - mid;
-        int[] leftArray = new int[n1];
-        int[] rightArray = new int[n2];
-        System.arraycopy(array, left, leftArray, 0, n1);
-        System.arraycopy(array, mid + 1, rightArray, 0, n2);
-
-        int i = 0, j = 0, k = left;
-        while (i < n1 && j < n2) {
-            if (stop) {
-                return;
-            }
-            currentIndex = k;
-            if (leftArray[i] <= rightArray[j]) {
-                array[k++] = leftArray[i++];
-            } else {
-                array[k++] = rightArray[j++];
-            }
-            SwingUtilities.invokeLater(this::repaint);
-            try {
-                Thread.sleep(delay);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
-        }
-        while (i < n1) {
-            if (stop) {
-                return;
-            }
-            currentIndex = k;
-            array[k++] = leftArray[i++];
-            SwingUtilities.invokeLater(this::repaint);
-            try {
-                Thread.sleep(delay);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
-        }
-        while (j < n2) {
-            if (stop) {
-                return;
-            }
-            currentIndex = k;
-            array[k++] = rightArray[j++];
-            SwingUtilities.invokeLater(this::repaint);
-            try {
-                Thread.sleep(delay);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
-        }
-    }
-
-    public void quickSort() {
-        stop = false;
-        Thread quickSortThread = new Thread(() -> {
-            quickSortHelper(0, array.length - 1);
-            currentIndex = -1;
-            nextIndex = -1;
-            SwingUtilities.invokeLater(this::repaint);
-        });
-        quickSortThread.start();
-    }
-    
-    private void quickSortHelper(int low, int high) {
-        if (stop) {
-            return; // If stop is set, exit the recursion
-        }
-        if (low < high) {
-            int pi = partition(low, high);
-            quickSortHelper(low, pi - 1);
-            quickSortHelper(pi + 1, high);
-        }
-    }
-    
-    private int partition(int low, int high) {
-        if (stop) {
-            return low; // If stop is set, exit the partition function
-        }
-        int pivot = array[low];
-        int i = low + 1;
-        int j = high;
-    
-        while (i <= j) {
-            if (stop) {
-                return low; // If stop is set, exit the partition function
-            }
-    
-            while (i <= j && array[i] <= pivot) {
-                if (stop) {
-                    return low; // If stop is set, exit the partition function
-                }
-                i++;
-                currentIndex = i;
-                SwingUtilities.invokeLater(this::repaint);
-                try {
-                    Thread.sleep(delay);
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                }
-            }
-    
-            while (i <= j && array[j] > pivot) {
-                if (stop) {
-                    return low; // If stop is set, exit the partition function
-                }
-                j--;
-                currentIndex = j;
-                SwingUtilities.invokeLater(this::repaint);
-                try {
-                    Thread.sleep(delay);
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                }
-            }
-    
-            if (i < j) {
-                if (stop) {
-                    return low; // If stop is set, exit the partition function
-                }
-                swap(i, j);
-                SwingUtilities.invokeLater(this::repaint);
-                try {
-                    Thread.sleep(delay);
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                }
-            }
-        }
-    
-        swap(low, j);
-        SwingUtilities.invokeLater(this::repaint);
-        try {
-            Thread.sleep(delay);
-        } catch (InterruptedException e) {
-            e.printStackTrace();
-        }
-        return j;
-    }
-    
-
-    private void swap(int i, int j) {
-        int temp = array[i];
-        array[i] = array[j];
-        array[j] = temp;
-    }
-
-    public void stopSorting() {
-
-        stop = true;
-
-    }
-
-}
-
-class GraphTraversalVisualizer extends JPanel {
-    private GraphPanel graphPanel;
-    private JPanel controlPanel;
-
-    public GraphTraversalVisualizer() {
-        graphPanel = new GraphPanel();
-        controlPanel = new JPanel();
-
-        String[] traversalOptions = { "BFS", "DFS" };
-        JComboBox<String> traversalSelector = new JComboBox<>(traversalOptions);
-        JButton startButton = new JButton("Start Traversal");
-        JButton reuseButton = new JButton("Reuse Graph");
-        JButton resetButton = new JButton("Reset Graph");
-
-        startButton.addActionListener(e -> {
-            String method = (String) traversalSelector.getSelectedItem();
-            graphPanel.startTraversal(method);
-        });
-
-        reuseButton.addActionListener(e -> graphPanel.reuseGraph());
-
-        resetButton.addActionListener(e -> graphPanel.resetGraph());
-
-        controlPanel.add(traversalSelector);
-        controlPanel.add(startButton);
-        controlPanel.add(reuseButton);
-        controlPanel.add(resetButton);
-
-        setLayout(new BorderLayout());
-        add(graphPanel, BorderLayout.CENTER);
-        add(controlPanel, BorderLayout.SOUTH);
-    }
-}
-
-class GraphPanel extends JPanel {
-    private final int NODE_RADIUS = 40;
-    private java.util.List<Node> nodes;
-    private java.util.List<Edge> edges;
-    private javax.swing.Timer timer;
-    private Queue<Node> traversalQueue;
-    private Stack<Node> traversalStack;
-    private String currentTraversalMethod;
-    private boolean isTraversalRunning;
-    private Node selectedNode;
-
-    public GraphPanel() {
-        nodes = new ArrayList<>();
-        edges = new ArrayList<>();
-        isTraversalRunning = false;
-        selectedNode = null;
-
-        addMouseListener(new MouseAdapter() {
-            
-            public void mousePressed(MouseEvent e) {
-                if (isTraversalRunning)
-                    return;
-
-                if (SwingUtilities.isLeftMouseButton(e)) {
-                    Node clickedNode = getNodeAtPosition(e.getX(), e.getY());
-                    if (clickedNode == null) {
-                        addNode(e.getX(), e.getY());
-                    } else if (selectedNode == null) {
-                        selectedNode = clickedNode;
-                    } else if (selectedNode != clickedNode) {
-                        addEdge(selectedNode, clickedNode);
-                        selectedNode = null;
-                    } else {
-                        selectedNode = null;
-                    }
-                }
-                repaint();
-            }
-        });
-    }
-
-    public void addNode(int x, int y) {
-        nodes.add(new Node(x, y));
-    }
-
-    public void addEdge(Node start, Node end) {
-        edges.add(new Edge(start, end));
-    }
-
-    private Node getNodeAtPosition(int x, int y) {
-        for (Node node : nodes) {
-            if (Math.hypot(node.getX() - x, node.getY() - y) < NODE_RADIUS) {
-                return node;
-            }
-        }
-        return null;
-    }
-
-    public void startTraversal(String method) {
-        if (nodes.isEmpty() || isTraversalRunning)
-            return;
-        resetTraversalData();
-        currentTraversalMethod = method;
-        isTraversalRunning = true;
-
-        Node startNode = nodes.get(0);
-        if (method.equals("BFS")) {
-            traversalQueue.add(startNode);
-            startTraversalTimer(this::bfsStep);
-        } else {
-            traversalStack.push(startNode);
-            startTraversalTimer(this::dfsStep);
-        }
-    }
-
-    private void resetTraversalData() {
-        traversalQueue = new LinkedList<>();
-        traversalStack = new Stack<>();
-        for (Node node : nodes) {
-            node.setVisited(false);
-        }
-        isTraversalRunning = false;
-        selectedNode = null;
-        if (timer != null)
-            timer.stop();
-    }
-
-    private void bfsStep() {
-        if (!traversalQueue.isEmpty()) {
-            Node node = traversalQueue.poll();
-            if (!node.isVisited()) {
-                node.setVisited(true);
-                for (Node neighbor : getNeighbors(node)) {
-                    if (!neighbor.isVisited())
-                        traversalQueue.add(neighbor);
-                }
-            }
-        } else {
-            timer.stop();
-            isTraversalRunning = false;
-        }
-    }
-
-    private void dfsStep() {
-        if (!traversalStack.isEmpty()) {
-            Node node = traversalStack.pop();
-            if (!node.isVisited()) {
-                node.setVisited(true);
-                for (Node neighbor : getNeighbors(node)) {
-                    if (!neighbor.isVisited())
-                        traversalStack.push(neighbor);
-                }
-            }
-        } else {
-            timer.stop();
-            isTraversalRunning = false;
-        }
-    }
-
-    private java.util.List<Node> getNeighbors(Node node) {
-        java.util.List<Node> neighbors = new ArrayList<>();
-        for (Edge edge : edges) {
-            if (edge.getStart() == node && !edge.getEnd().isVisited()) {
-                neighbors.add(edge.getEnd());
-            } else if (edge.getEnd() == node && !edge.getStart().isVisited()) {
-                neighbors.add(edge.getStart());
-            }
-        }
-        return neighbors;
-    }
-
-    private void startTraversalTimer(Runnable traversalStep) {
-        timer = new javax.swing.Timer(500, e -> {
-            traversalStep.run();
-            repaint();
-        });
-        timer.start();
-    }
-
-    public void resetGraph() {
-        resetTraversalData();
-        nodes.clear();
-        edges.clear();
-        repaint();
-    }
-
-    public void reuseGraph() {
-        resetTraversalData();
-
-        repaint();
-    }
-
-    
-    protected void paintComponent(Graphics g) {
-        super.paintComponent(g);
-
-       
-        for (Edge edge : edges) {
-            g.drawLine(edge.getStart().getX(), edge.getStart().getY(), edge.getEnd().getX(), edge.getEnd().getY());
-        }
-
-        for (int i = 0; i < nodes.size(); i++) {
-            Node node = nodes.get(i);
-            g.setColor(node.isVisited() ? Color.GREEN : Color.RED);
-            g.fillOval(node.getX() - NODE_RADIUS / 2, node.getY() - NODE_RADIUS / 2, NODE_RADIUS, NODE_RADIUS);
-            g.setColor(Color.BLACK);
-            g.drawOval(node.getX() - NODE_RADIUS / 2, node.getY() - NODE_RADIUS / 2, NODE_RADIUS, NODE_RADIUS);
-
-            g.setColor(Color.WHITE);
-            g.setFont(new Font("Arial", Font.BOLD, 20));
-            String indexText = Integer.toString(i + 1);
-
-            FontMetrics metrics = g.getFontMetrics();
-            int textWidth = metrics.stringWidth(indexText);
-            int textHeight = metrics.getHeight();
-
-            int textX = node.getX() - textWidth / 2; 
-            int textY = node.getY() + textHeight / 4; 
-            g.drawString(indexText, textX, textY);
-
-            if (node == selectedNode) {
-                g.setColor(Color.BLUE);
-                g.drawOval(node.getX() - NODE_RADIUS, node.getY() - NODE_RADIUS, NODE_RADIUS * 2, NODE_RADIUS * 2);
-            }
-        }
-    }
-}
-
-class Node {
-    private final int x, y;
-    private boolean visited;
-
-    public Node(int x, int y) {
-        this.x = x;
-        this.y = y;
-        this.visited = false;
-    }
-
-    public int getX() {
-        return x;
-    }
-
-    public int getY() {
-        return y;
-    }
-
-    public boolean isVisited() {
-        return visited;
-    }
-
-    public void setVisited(boolean visited) {
-        this.visited = visited;
-    }
-}
-
-class Edge {
-    private final Node start, end;
-
-    public Edge(Node start, Node end) {
-        this.start = start;
-        this.end = end;
-    }
-
-    public Node getStart() {
-        return start;
-    }
-
-    public Node getEnd() {
-        return end;
-    }
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.*;
+import java.util.ArrayList;
+
+public class MainVisualizer extends JFrame {
+    static final String[] VISUALIZERS = { "Algorithm Visualizer", "Sort Race", "External Sort",
+            "Graph Traversal Visualizer" };
+    private static final long STARTUP_TIMEOUT_MILLIS = 30_000;
+    private final VisualizerSwitcher switcher;
+
+    public MainVisualizer() {
+        this(VISUALIZERS[0]);
+    }
+
+    MainVisualizer(String initial) {
+        setTitle("Visualizer");
+        setSize(800, 600);
+        setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+
+        switcher = new VisualizerSwitcher(initial);
+        UiMetrics.start();
+        setLayout(new BorderLayout());
+        add(switcher, BorderLayout.CENTER);
+
+        addWindowListener(new WindowAdapter() {
+            public void windowClosing(WindowEvent e) {
+                switcher.saveSession();
+            }
+        });
+
+        setVisible(true);
+    }
+
+    // Opens the named visualizer and waits for it to paint; for StartupHarness. Returns the
+    // System.nanoTime() of the first frame and, for the Algorithm Visualizer, of the first
+    // played step of a quick sort, or -1 where there is none. Without a display the panel
+    // is painted into an offscreen image. Call off the event thread.
+    static long[] measureStartup(String name) throws Exception {
+        VisualizerSwitcher[] opened = new VisualizerSwitcher[1];
+        SwingUtilities.invokeAndWait(() -> {
+            if (GraphicsEnvironment.isHeadless()) {
+                opened[0] = new VisualizerSwitcher(name);
+                opened[0].setSize(800, 600);
+                layoutTree(opened[0]);
+                java.awt.image.BufferedImage image = new java.awt.image.BufferedImage(800, 600,
+                        java.awt.image.BufferedImage.TYPE_INT_RGB);
+                Graphics g = image.createGraphics();
+                opened[0].paint(g);
+                g.dispose();
+            } else {
+                opened[0] = new MainVisualizer(name).switcher;
+            }
+        });
+        VisualizerSwitcher switcher = opened[0];
+        long deadline = System.currentTimeMillis() + STARTUP_TIMEOUT_MILLIS;
+        while (switcher.firstPaintNanos() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        long[] times = { switcher.firstPaintNanos() == 0 ? -1 : switcher.firstPaintNanos(), -1 };
+        if (switcher.visualizer(name) instanceof AlgorithmVisualizer) {
+            AlgorithmVisualizer sorts = (AlgorithmVisualizer) switcher.visualizer(name);
+            SwingUtilities.invokeAndWait(() -> sorts.record(SortRegistry.byKey("quick")));
+            while (times[1] < 0 && System.currentTimeMillis() < deadline) {
+                SwingUtilities.invokeAndWait(() -> {
+                    if (sorts.playbackPosition() > 0) {
+                        times[1] = System.nanoTime();
+                    }
+                });
+                Thread.sleep(1);
+            }
+        }
+        return times;
+    }
+
+    // Without a window nothing validates the component tree, so lay it out by hand.
+    private static void layoutTree(Component component) {
+        if (component instanceof Container) {
+            ((Container) component).doLayout();
+            for (Component child : ((Container) component).getComponents()) {
+                layoutTree(child);
+            }
+        }
+    }
+
+    // --serve PORT also streams the sort and graph panels to remote viewers; see TraceServer.
+    public static void main(String[] args) throws java.io.IOException {
+        if (args.length == 2 && "--serve".equals(args[0])) {
+            TraceServer server = TraceServer.start(Integer.parseInt(args[1]));
+            System.err.println("Streaming runs at http://localhost:" + server.port() + "/runs");
+        }
+        SwingUtilities.invokeLater(MainVisualizer::new);
+    }
+}
+
+// The visualizer selector and the visualizer it shows. Each visualizer is built the first
+// time it is selected, so startup only pays for the one on screen, and its algorithms are
+// then warmed up on a low-priority background thread while the user reads the controls.
+class VisualizerSwitcher extends JPanel {
+    private static final int WARMUP_SIZE = 512;
+    private static final int WARMUP_ROUNDS = 8;
+    private static final java.util.concurrent.ExecutorService WARMUP = java.util.concurrent.Executors
+            .newSingleThreadExecutor(task -> {
+                Thread thread = new Thread(task, "warmup");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            });
+
+    private static final int OVERLAY_REFRESH_MILLIS = 250;
+
+    // Each visualizer sits in a layer that can draw the UI metrics over it.
+    private final java.util.Map<String, JLayer<JComponent>> visualizers = new java.util.HashMap<>();
+    private final JComboBox<String> selector = new JComboBox<>(MainVisualizer.VISUALIZERS);
+    private final JCheckBox metricsBox = new JCheckBox("UI Metrics");
+    private final MetricsOverlay overlay = new MetricsOverlay();
+    private JLayer<JComponent> current;
+    private final javax.swing.Timer overlayTimer = new javax.swing.Timer(OVERLAY_REFRESH_MILLIS,
+            e -> overlay.refresh(current));
+    // System.nanoTime() of the first paint, for the startup harness.
+    private volatile long firstPaintNanos;
+
+    VisualizerSwitcher(String initial) {
+        setLayout(new BorderLayout());
+        JPanel northPanel = new JPanel(new BorderLayout());
+        northPanel.add(selector, BorderLayout.CENTER);
+        northPanel.add(metricsBox, BorderLayout.EAST);
+        add(northPanel, BorderLayout.NORTH);
+        selector.setSelectedItem(initial);
+        selector.addActionListener(e -> select((String) selector.getSelectedItem()));
+        metricsBox.addActionListener(e -> {
+            overlay.setShown(metricsBox.isSelected());
+            if (metricsBox.isSelected()) {
+                overlayTimer.start();
+            } else {
+                overlayTimer.stop();
+            }
+            current.repaint();
+        });
+        select(initial);
+    }
+
+    private void select(String name) {
+        if (current != null) {
+            remove(current);
+        }
+        current = visualizers.get(name);
+        if (current == null) {
+            current = new JLayer<>(create(name), overlay);
+            visualizers.put(name, current);
+            WARMUP.execute(() -> warmUp(name));
+        }
+        add(current, BorderLayout.CENTER);
+        revalidate();
+        repaint();
+    }
+
+    private static JComponent create(String name) {
+        switch (name) {
+            case "Algorithm Visualizer":
+                return new AlgorithmVisualizer(6);
+            case "Sort Race":
+                return new SortRaceVisualizer();
+            case "External Sort":
+                return new ExternalSortVisualizer();
+            default:
+                return new GraphTraversalVisualizer();
+        }
+    }
+
+    // Runs the visualizer's algorithms on small inputs the way the panel will, so the
+    // first real run starts with loaded classes and compiled hot loops.
+    private static void warmUp(String name) {
+        java.util.SplittableRandom random = new java.util.SplittableRandom(WARMUP_SIZE);
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            if (name.equals("External Sort")) {
+                int[] data = random.ints(WARMUP_SIZE * 64).toArray();
+                SortAlgorithms.radixSort(data, data.length, new int[data.length]);
+            } else if (name.equals("Graph Traversal Visualizer")) {
+                Graph graph = new Graph();
+                for (int i = 0; i < WARMUP_SIZE; i++) {
+                    graph.addNode(random.nextInt(10_000), random.nextInt(10_000));
+                }
+                for (int e = 0; e < WARMUP_SIZE * 4; e++) {
+                    graph.addEdge(random.nextInt(WARMUP_SIZE), random.nextInt(WARMUP_SIZE));
+                }
+                new GraphTraversals().bfs(graph, 0, new int[WARMUP_SIZE]);
+                ParallelBfs.run(graph, 0);
+                new ShortestPaths().aStar(graph, 0, WARMUP_SIZE - 1);
+            } else {
+                int[] input = random.ints(WARMUP_SIZE, 50, 450).toArray();
+                for (SortAlgorithm sort : SortRegistry.sorts()) {
+                    OperationTrace trace = new OperationTrace(input, 1L << 20);
+                    sort.sort(new TracedArray(input.clone(), trace));
+                    new TracePlayer(trace).seek(trace.size());
+                }
+            }
+        }
+    }
+
+    public void saveSession() {
+        JComponent graph = visualizer("Graph Traversal Visualizer");
+        if (graph != null) {
+            ((GraphTraversalVisualizer) graph).saveSession();
+        }
+    }
+
+    JComponent visualizer(String name) {
+        JLayer<JComponent> layer = visualizers.get(name);
+        return layer == null ? null : layer.getView();
+    }
+
+    long firstPaintNanos() {
+        return firstPaintNanos;
+    }
+
+    
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        if (firstPaintNanos == 0) {
+            firstPaintNanos = System.nanoTime();
+        }
+    }
+}
+
+// Draws the UiMetrics summary in the top right corner of a visualizer. As a layer UI it
+// paints after every repaint of the panel beneath, partial ones included, so the text
+// is never half overwritten; refresh repaints just its own box.
+class MetricsOverlay extends javax.swing.plaf.LayerUI<JComponent> {
+    private static final Font FONT = new Font("Monospaced", Font.PLAIN, 12);
+    private static final Color BACKGROUND = new Color(0, 0, 0, 160);
+    private final Rectangle box = new Rectangle();
+    private boolean shown;
+
+    void setShown(boolean shown) {
+        this.shown = shown;
+    }
+
+    void refresh(JComponent layer) {
+        if (box.isEmpty()) {
+            layer.repaint();
+        } else {
+            layer.repaint(box);
+        }
+    }
+
+    public void paint(Graphics g, JComponent c) {
+        super.paint(g, c);
+        if (!shown) {
+            return;
+        }
+        String[] lines = UiMetrics.summary();
+        g.setFont(FONT);
+        FontMetrics metrics = g.getFontMetrics();
+        int width = 0;
+        for (String line : lines) {
+            width = Math.max(width, metrics.stringWidth(line));
+        }
+        box.setBounds(c.getWidth() - width - 24, 8, width + 16, lines.length * metrics.getHeight() + 12);
+        g.setColor(BACKGROUND);
+        g.fillRect(box.x, box.y, box.width, box.height);
+        g.setColor(Color.WHITE);
+        for (int i = 0; i < lines.length; i++) {
+            g.drawString(lines[i], box.x + 8, box.y + 6 + metrics.getAscent() + i * metrics.getHeight());
+        }
+    }
+}
+
+class AlgorithmVisualizer extends JPanel {
+    private static final long TRACE_LIMIT = 1L << 24;
+    private static final int SORTS_PER_ROW = 6;
+    private static final Font HUD_FONT = new Font("Monospaced", Font.PLAIN, 13);
+    private static final Color HUD_BACKGROUND = new Color(0, 0, 0, 160);
+    static final int EXPORT_FPS = 25;
+    private int[] array;
+    private int currentIndex = -1;
+    private int nextIndex = -1;
+    private int recording;
+    private TracePlayer player;
+    private final FrameClock.Pacer pacer = new FrameClock.Pacer(1);
+    private final FrameClock.FrameListener playback = this::playbackFrame;
+    private boolean playing;
+    private boolean updatingPosition;
+    private String runName;
+    private long runReads;
+    private final java.util.List<String> runHistory = new ArrayList<>();
+    private final BarRenderer renderer = new BarRenderer();
+    // Bars changed since the last published frame; a frame touching over a quarter of
+    // the array goes out as a keyframe instead.
+    private final TraceServer.Session live = TraceServer.register("Sort");
+    private int[] liveIndices = new int[64], liveValues = new int[64];
+    private int liveCount;
+    private boolean liveOverflow;
+    private final RunService runs = new RunService(new RunService.RunListener() {
+        public void started(String name) {
+            showStatus(name + ": recording...");
+        }
+
+        public void cancelled(String name, long elapsedNanos) {
+            showStatus(String.format("%s: cancelled after %.2f ms", name, elapsedNanos / 1e6));
+        }
+
+        public void finished(String name, long elapsedNanos) {
+            showStatus(String.format("%s: recorded in %.2f ms", name, elapsedNanos / 1e6));
+        }
+
+        public void failed(String name, Throwable error, long elapsedNanos) {
+            showStatus(name + ": failed (" + error + ")");
+        }
+    });
+    private final RunService exports = new RunService(new RunService.RunListener() {
+        public void cancelled(String name, long elapsedNanos) {
+            exportEnded(name + " cancelled");
+        }
+
+        public void finished(String name, long elapsedNanos) {
+            exportEnded(String.format("%s finished in %.2f s", name, elapsedNanos / 1e9));
+        }
+
+        public void failed(String name, Throwable error, long elapsedNanos) {
+            exportEnded(name + " failed (" + error + ")");
+        }
+    });
+    private final RunService traceSaves = new RunService(new RunService.RunListener() {
+        public void finished(String name, long elapsedNanos) {
+            showStatus(String.format("%s finished in %.2f s", name, elapsedNanos / 1e9));
+        }
+
+        public void failed(String name, Throwable error, long elapsedNanos) {
+            showStatus(name + " failed (" + error + ")");
+        }
+    });
+    private boolean exporting;
+    private JButton exportFramesButton;
+    private JPanel controlPanel;
+    private JPanel playbackPanel;
+    private JPanel southPanel;
+    private JButton stopButton, resetButton, playButton, stepBackButton, stepButton;
+    private JComboBox<Integer> sizeSelector;
+    private JSlider positionSlider;
+    private JLabel statusLabel;
+    private JCheckBox hudCheckBox;
+    private JButton exportButton;
+    private JButton saveTraceButton, openTraceButton;
+
+    public AlgorithmVisualizer(int size) {
+        array = new int[size];
+        createControlPanel();
+        setArraySize(size);
+    }
+
+    private void createControlPanel() {
+        controlPanel = new JPanel();
+        playbackPanel = new JPanel();
+
+        stopButton = new JButton("stop");
+
+        resetButton = new JButton("Reset");
+
+        playButton = new JButton("Play");
+        stepBackButton = new JButton("<");
+        stepButton = new JButton(">");
+        positionSlider = new JSlider(0, 0, 0);
+        statusLabel = new JLabel();
+        hudCheckBox = new JCheckBox("Stats", true);
+        hudCheckBox.addActionListener(e -> FrameClock.get().requestRepaint(this));
+        exportButton = new JButton("Export Stats");
+        exportButton.addActionListener(e -> exportRunHistory());
+        exportFramesButton = new JButton("Export Frames");
+        exportFramesButton.addActionListener(e -> exportFrames());
+        saveTraceButton = new JButton("Save Trace");
+        saveTraceButton.addActionListener(e -> saveTrace());
+        openTraceButton = new JButton("Open Trace");
+        openTraceButton.addActionListener(e -> openTrace());
+
+        sizeSelector = new JComboBox<>(new Integer[] { 6, 10, 20, 30, 40, 50, 60, 70, 80, 90, 100, 1000, 10000,
+                100000, 1000000 });
+        sizeSelector.addActionListener(e -> {
+            int selectedSize = (int) sizeSelector.getSelectedItem();
+            setArraySize(selectedSize);
+        });
+
+        stopButton.addActionListener(e -> stopSorting());
+
+        resetButton.addActionListener(e -> setArraySize((int) sizeSelector.getSelectedItem()));
+
+        playButton.addActionListener(e -> togglePlayback());
+        stepBackButton.addActionListener(e -> {
+            pausePlayback();
+            if (player != null && player.stepBackward()) {
+                updateFromPlayer();
+            }
+        });
+        stepButton.addActionListener(e -> {
+            pausePlayback();
+            if (player != null && player.stepForward()) {
+                updateFromPlayer();
+            }
+        });
+        positionSlider.addChangeListener(e -> {
+            if (updatingPosition || player == null) {
+                return;
+            }
+            pausePlayback();
+            player.seek(positionSlider.getValue());
+            updateFromPlayer();
+        });
+
+        // One button per registered sort, SORTS_PER_ROW to a row; the first row also
+        // holds the size selector and the stop and reset buttons.
+        java.util.List<JPanel> sortRows = new ArrayList<>();
+        sortRows.add(controlPanel);
+        controlPanel.add(sizeSelector);
+        java.util.List<SortAlgorithm> sorts = SortRegistry.sorts();
+        for (int i = 0; i < sorts.size(); i++) {
+            if (i > 0 && i % SORTS_PER_ROW == 0) {
+                sortRows.add(new JPanel());
+            }
+            SortAlgorithm sort = sorts.get(i);
+            JButton button = new JButton(sort.name());
+            button.addActionListener(e -> record(sort));
+            sortRows.get(sortRows.size() - 1).add(button);
+        }
+        controlPanel.add(stopButton);
+
+        controlPanel.add(resetButton);
+
+        playbackPanel.add(new SpeedControl(pacer));
+        playbackPanel.add(stepBackButton);
+        playbackPanel.add(playButton);
+        playbackPanel.add(stepButton);
+        playbackPanel.add(positionSlider);
+        playbackPanel.add(hudCheckBox);
+        playbackPanel.add(exportButton);
+        playbackPanel.add(exportFramesButton);
+        playbackPanel.add(saveTraceButton);
+        playbackPanel.add(openTraceButton);
+        playbackPanel.add(statusLabel);
+
+        southPanel = new JPanel(new GridLayout(0, 1));
+        for (JPanel row : sortRows) {
+            southPanel.add(row);
+        }
+        southPanel.add(playbackPanel);
+
+        setLayout(new BorderLayout());
+        add(southPanel, BorderLayout.SOUTH); // Place the control panel at the bottom
+    }
+
+    // Steps played so far, or -1 before anything has been recorded. Call on the event thread.
+    int playbackPosition() {
+        return player == null ? -1 : player.position();
+    }
+
+    private void setArraySize(int size) {
+        stopSorting();
+        player = null;
+        array = new int[size];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = (int) (Math.random() * 400 + 50);
+        }
+        currentIndex = -1;
+        nextIndex = -1;
+        renderer.markAllDirty();
+        liveOverflow = true;
+        publishLive();
+        setPosition(0, 0);
+        FrameClock.get().requestRepaint(this);
+    }
+
+    
+    protected void paintComponent(Graphics g) {
+        long start = System.nanoTime();
+        super.paintComponent(g);
+        renderer.paint(g, array, player == null ? null : player.owners(), currentIndex, nextIndex, getWidth(),
+                getHeight() - southPanel.getHeight());
+        if (hudCheckBox.isSelected() && player != null) {
+            paintHud(g, player);
+        }
+        UiMetrics.SORT_PAINT.record(System.nanoTime() - start);
+    }
+
+    private void paintHud(Graphics g, TracePlayer player) {
+        String[] lines = {
+                runName + " (n=" + array.length + ")",
+                String.format("step        %,d / %,d", player.position(), player.length()),
+                String.format("comparisons %,d", player.comparisons()),
+                String.format("swaps       %,d", player.swaps()),
+                String.format("writes      %,d", player.writes()),
+                runReads < 0 ? "reads       not recorded" : String.format("reads       %,d total", runReads) };
+        g.setFont(HUD_FONT);
+        FontMetrics metrics = g.getFontMetrics();
+        int width = 0;
+        for (String line : lines) {
+            width = Math.max(width, metrics.stringWidth(line));
+        }
+        g.setColor(HUD_BACKGROUND);
+        g.fillRect(8, 8, width + 16, lines.length * metrics.getHeight() + 12);
+        g.setColor(Color.WHITE);
+        for (int i = 0; i < lines.length; i++) {
+            g.drawString(lines[i], 16, 14 + metrics.getAscent() + i * metrics.getHeight());
+        }
+    }
+
+    // Runs the sort at full speed on a copy of the array, then plays back what it recorded.
+    void record(SortAlgorithm sort) {
+        String name = sort.name();
+        stopSorting();
+        int run = recording;
+        int[] input = array.clone();
+        runs.submit(name, () -> {
+            OperationTrace trace = new OperationTrace(input, TRACE_LIMIT);
+            TracedArray traced = new TracedArray(input.clone(), trace);
+            long start = System.nanoTime();
+            try {
+                sort.sort(traced);
+            } catch (IllegalStateException e) {
+                if (!trace.isTruncated()) {
+                    throw e;
+                }
+            }
+            long elapsed = System.nanoTime() - start;
+            String stats = String.join(",", name, Integer.toString(input.length), Long.toString(traced.comparisons()),
+                    Long.toString(traced.swaps()), Long.toString(traced.reads()), Long.toString(traced.writes()),
+                    Integer.toString(trace.size()), Boolean.toString(trace.isTruncated()), Long.toString(elapsed));
+            SwingUtilities.invokeLater(() -> {
+                runHistory.add(stats);
+                if (run == recording) {
+                    runName = name;
+                    runReads = traced.reads();
+                    startPlayback(new TracePlayer(trace));
+                }
+            });
+        });
+    }
+
+    private void exportRunHistory() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setSelectedFile(new java.io.File("sort-runs.csv"));
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        java.util.List<String> lines = new ArrayList<>();
+        lines.add("algorithm,size,comparisons,swaps,reads,writes,trace_events,trace_truncated,record_ns");
+        lines.addAll(runHistory);
+        try {
+            java.nio.file.Files.write(chooser.getSelectedFile().toPath(), lines);
+        } catch (java.io.IOException e) {
+            JOptionPane.showMessageDialog(this, "Could not export stats: " + e.getMessage(), "Export Stats",
+                    JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    // Renders the current recording offscreen at the current speed and window size,
+    // into a .gif or a numbered PNG sequence. A second click cancels.
+    private void exportFrames() {
+        if (exporting) {
+            exports.cancel();
+            return;
+        }
+        if (player == null) {
+            statusLabel.setText("Run a sort before exporting frames");
+            return;
+        }
+        JFileChooser chooser = new JFileChooser();
+        chooser.setSelectedFile(new java.io.File("sort.gif"));
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        java.nio.file.Path path = chooser.getSelectedFile().toPath();
+        TracePlayer replay = player.copy();
+        int w = getWidth(), h = getHeight() - southPanel.getHeight();
+        int stepsPerFrame = (int) Math.max(1, Math.round(pacer.stepsPerSecond() / EXPORT_FPS));
+        boolean hud = hudCheckBox.isSelected();
+        exporting = true;
+        exportFramesButton.setText("Cancel Export");
+        exports.submit("Export " + path.getFileName(), () -> renderFrames(replay, path, w, h, stepsPerFrame, hud));
+    }
+
+    private void renderFrames(TracePlayer replay, java.nio.file.Path path, int w, int h, int stepsPerFrame,
+            boolean hud) {
+        BarRenderer frameRenderer = new BarRenderer();
+        replay.setChangeListener(frameRenderer::markDirty);
+        int length = replay.length();
+        int total = (length + stepsPerFrame - 1) / stepsPerFrame + 1;
+        try (FrameExporter exporter = new FrameExporter(path, 1000 / EXPORT_FPS)) {
+            for (int frame = 0; frame < total; frame++) {
+                RunService.checkCancelled();
+                replay.seek((int) Math.min(length, (long) frame * stepsPerFrame));
+                java.awt.image.BufferedImage image = new java.awt.image.BufferedImage(w, h,
+                        java.awt.image.BufferedImage.TYPE_INT_RGB);
+                Graphics2D g = image.createGraphics();
+                boolean end = replay.isAtEnd();
+                frameRenderer.paint(g, replay.state(), replay.owners(), end ? -1 : replay.highlightFirst(),
+                        end ? -1 : replay.highlightSecond(), w, h);
+                if (hud) {
+                    paintHud(g, replay);
+                }
+                g.dispose();
+                exporter.addFrame(image);
+                if (frame % 100 == 0) {
+                    showStatus(String.format("Exporting frame %,d / %,d", frame, total));
+                }
+            }
+        } catch (java.io.IOException e) {
+            throw new java.io.UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new java.util.concurrent.CancellationException();
+        }
+    }
+
+    private void exportEnded(String message) {
+        SwingUtilities.invokeLater(() -> {
+            exporting = false;
+            exportFramesButton.setText("Export Frames");
+            statusLabel.setText(message);
+        });
+    }
+
+    // Saves the recording in memory as a seekable trace file.
+    private void saveTrace() {
+        OperationTrace trace = player == null ? null : player.trace();
+        if (trace == null) {
+            statusLabel.setText("Run a sort before saving a trace");
+            return;
+        }
+        JFileChooser chooser = new JFileChooser();
+        chooser.setSelectedFile(new java.io.File("sort.trc"));
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        java.nio.file.Path path = chooser.getSelectedFile().toPath();
+        traceSaves.submit("Save " + path.getFileName(), () -> {
+            try {
+                TraceFile.write(trace, path);
+            } catch (java.io.IOException e) {
+                throw new java.io.UncheckedIOException(e);
+            }
+        });
+    }
+
+    // Plays a trace file straight from its mapping, without re-running the sort.
+    private void openTrace() {
+        JFileChooser chooser = new JFileChooser();
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        java.nio.file.Path path = chooser.getSelectedFile().toPath();
+        TraceFile file;
+        try {
+            file = TraceFile.open(path);
+        } catch (java.io.IOException e) {
+            statusLabel.setText("Could not open trace: " + e.getMessage());
+            return;
+        }
+        stopSorting();
+        runName = path.getFileName().toString();
+        runReads = -1;
+        renderer.markAllDirty();
+        startPlayback(new TracePlayer(file));
+        statusLabel.setText(String.format("%s: %,d steps%s", runName, file.length(),
+                file.isTruncated() ? " (truncated)" : ""));
+    }
+
+    private void startPlayback(TracePlayer player) {
+        this.player = player;
+        player.setChangeListener(this::markChanged);
+        array = player.state();
+        updateFromPlayer();
+        resumePlayback();
+    }
+
+    private void playbackFrame(long elapsedNanos) {
+        for (int steps = pacer.steps(elapsedNanos); steps > 0; steps--) {
+            if (player == null || !player.stepForward()) {
+                pausePlayback();
+                break;
+            }
+        }
+        updateFromPlayer();
+    }
+
+    private void updateFromPlayer() {
+        if (player == null) {
+            return;
+        }
+        if (player.isAtEnd()) {
+            currentIndex = -1;
+            nextIndex = -1;
+        } else {
+            currentIndex = player.highlightFirst();
+            nextIndex = player.highlightSecond();
+        }
+        setPosition(player.position(), player.length());
+        publishLive();
+        FrameClock.get().requestRepaint(this);
+    }
+
+    private void markChanged(int index) {
+        renderer.markDirty(index);
+        if (liveCount == liveIndices.length) {
+            if (liveCount > array.length / 4) {
+                liveOverflow = true;
+                return;
+            }
+            liveIndices = java.util.Arrays.copyOf(liveIndices, liveCount * 2);
+            liveValues = new int[liveIndices.length];
+        }
+        liveIndices[liveCount++] = index;
+    }
+
+    private void publishLive() {
+        if (liveOverflow || live.size() != array.length) {
+            live.reset(array, array.length);
+            liveOverflow = false;
+            liveCount = 0;
+        }
+        for (int i = 0; i < liveCount; i++) {
+            liveValues[i] = array[liveIndices[i]];
+        }
+        live.publish(player == null ? 0 : player.position(), player == null ? 0 : player.length(), currentIndex,
+                nextIndex, liveIndices, liveValues, liveCount);
+        liveCount = 0;
+    }
+
+    private void setPosition(int position, int length) {
+        updatingPosition = true;
+        positionSlider.setMaximum(length);
+        positionSlider.setValue(position);
+        updatingPosition = false;
+    }
+
+    private void togglePlayback() {
+        if (playing) {
+            pausePlayback();
+        } else {
+            resumePlayback();
+        }
+    }
+
+    private void resumePlayback() {
+        if (player == null) {
+            return;
+        }
+        if (player.isAtEnd()) {
+            player.seek(0);
+        }
+        pacer.reset();
+        playing = true;
+        FrameClock.get().addListener(playback);
+        playButton.setText("Pause");
+    }
+
+    private void pausePlayback() {
+        playing = false;
+        FrameClock.get().removeListener(playback);
+        playButton.setText("Play");
+    }
+
+    private void showStatus(String text) {
+        SwingUtilities.invokeLater(() -> statusLabel.setText(text));
+    }
+
+    public void stopSorting() {
+        recording++;
+        runs.cancel();
+        pausePlayback();
+    }
+
+}
+
+// Races several sorts on clones of one seeded input. Each lane records its sort on its
+// own RunService, so the recordings run in parallel on separate copies. Once all are
+// recorded, one frame listener advances every lane by the same number of operations,
+// so lanes finish in order of how much work their sort did.
+class SortRaceVisualizer extends JPanel {
+    private static final long TRACE_LIMIT = 1L << 21;
+    private final FrameClock.Pacer pacer = new FrameClock.Pacer(100);
+    private final FrameClock.FrameListener raceFrame = this::raceFrame;
+    private final java.util.Map<String, JCheckBox> choices = new java.util.LinkedHashMap<>();
+    private final java.util.List<RaceLane> lanes = new ArrayList<>();
+    private final JPanel lanePanel = new JPanel();
+    private final JComboBox<Integer> sizeSelector = new JComboBox<>(new Integer[] { 10, 50, 100, 500, 1000, 5000,
+            10000 });
+    private final JTextField seedField = new JTextField("42", 6);
+    private final JLabel statusLabel = new JLabel();
+    // Bumped by every start and stop so callbacks from an abandoned race are ignored.
+    private int race;
+    private int recordingLanes;
+    private long raceNanos;
+
+    public SortRaceVisualizer() {
+        JPanel choicePanel = new JPanel();
+        for (SortAlgorithm sort : SortRegistry.sorts()) {
+            JCheckBox choice = new JCheckBox(sort.name(), true);
+            choices.put(sort.name(), choice);
+            choicePanel.add(choice);
+        }
+        sizeSelector.setSelectedItem(100);
+        JButton startButton = new JButton("Start Race");
+        JButton stopButton = new JButton("Stop");
+        startButton.addActionListener(e -> startRace());
+        stopButton.addActionListener(e -> {
+            stopRace();
+            statusLabel.setText("Race stopped");
+        });
+
+        JPanel controlPanel = new JPanel();
+        controlPanel.add(sizeSelector);
+        controlPanel.add(new JLabel("Seed"));
+        controlPanel.add(seedField);
+        controlPanel.add(new SpeedControl(pacer));
+        controlPanel.add(startButton);
+        controlPanel.add(stopButton);
+        controlPanel.add(statusLabel);
+
+        JPanel southPanel = new JPanel(new GridLayout(0, 1));
+        southPanel.add(choicePanel);
+        southPanel.add(controlPanel);
+
+        setLayout(new BorderLayout());
+        add(lanePanel, BorderLayout.CENTER);
+        add(southPanel, BorderLayout.SOUTH);
+    }
+
+    private void startRace() {
+        long seed;
+        try {
+            seed = Long.parseLong(seedField.getText().trim());
+        } catch (NumberFormatException e) {
+            statusLabel.setText("Seed must be a number");
+            return;
+        }
+        stopRace();
+        int generation = race;
+        int size = (int) sizeSelector.getSelectedItem();
+        java.util.SplittableRandom random = new java.util.SplittableRandom(seed);
+        int[] input = new int[size];
+        for (int i = 0; i < size; i++) {
+            input[i] = random.nextInt(50, 450);
+        }
+        lanes.clear();
+        lanePanel.removeAll();
+        for (java.util.Map.Entry<String, JCheckBox> choice : choices.entrySet()) {
+            if (choice.getValue().isSelected()) {
+                lanes.add(new RaceLane(choice.getKey(), input));
+            }
+        }
+        if (lanes.isEmpty()) {
+            statusLabel.setText("Pick at least one sort");
+            return;
+        }
+        lanePanel.setLayout(new GridLayout(0, lanes.size() <= 3 ? 1 : 2));
+        for (RaceLane lane : lanes) {
+            lanePanel.add(lane);
+        }
+        lanePanel.revalidate();
+        lanePanel.repaint();
+        recordingLanes = lanes.size();
+        statusLabel.setText("Recording " + lanes.size() + " sorts...");
+        for (RaceLane lane : lanes) {
+            lane.record(SortRegistry.byName(lane.name)::sort, () -> laneRecorded(generation));
+        }
+    }
+
+    private void laneRecorded(int generation) {
+        if (generation != race || --recordingLanes > 0) {
+            return;
+        }
+        // Fewer operations finish earlier on the shared clock; truncated or failed lanes never finish.
+        for (RaceLane lane : lanes) {
+            if (lane.player == null || lane.truncated) {
+                continue;
+            }
+            lane.place = 1;
+            for (RaceLane other : lanes) {
+                if (other.player != null && !other.truncated && other.player.length() < lane.player.length()) {
+                    lane.place++;
+                }
+            }
+        }
+        raceNanos = 0;
+        pacer.reset();
+        FrameClock.get().addListener(raceFrame);
+        statusLabel.setText("Racing...");
+    }
+
+    private void raceFrame(long elapsedNanos) {
+        raceNanos += elapsedNanos;
+        int steps = pacer.steps(elapsedNanos);
+        boolean running = false;
+        for (RaceLane lane : lanes) {
+            TracePlayer player = lane.player;
+            if (player == null || player.isAtEnd()) {
+                continue;
+            }
+            player.seek((int) Math.min(player.length(), (long) player.position() + steps));
+            if (player.isAtEnd()) {
+                lane.finishNanos = raceNanos;
+            } else {
+                running = true;
+            }
+            FrameClock.get().requestRepaint(lane);
+        }
+        if (!running) {
+            FrameClock.get().removeListener(raceFrame);
+            statusLabel.setText("Race finished");
+        }
+    }
+
+    private void stopRace() {
+        race++;
+        FrameClock.get().removeListener(raceFrame);
+        for (RaceLane lane : lanes) {
+            lane.runs.cancel();
+        }
+    }
+
+    private static final class RaceLane extends JPanel {
+        private static final Font HUD_FONT = new Font("Monospaced", Font.PLAIN, 12);
+        private static final Color HUD_BACKGROUND = new Color(0, 0, 0, 160);
+
+        final String name;
+        private final int[] input;
+        private final BarRenderer renderer = new BarRenderer();
+        private final RunService runs;
+        private Runnable recorded;
+        TracePlayer player;
+        boolean truncated;
+        int place;
+        long finishNanos;
+        private long recordNanos;
+        private String failure;
+
+        RaceLane(String name, int[] input) {
+            this.name = name;
+            this.input = input;
+            runs = new RunService(new RunService.RunListener() {
+                public void failed(String run, Throwable error, long elapsedNanos) {
+                    SwingUtilities.invokeLater(() -> {
+                        failure = error.toString();
+                        recorded.run();
+                        FrameClock.get().requestRepaint(RaceLane.this);
+                    });
+                }
+            });
+        }
+
+        // Sorts a private copy of the input; done runs on the EDT once the trace is ready.
+        void record(java.util.function.Consumer<TracedArray> sort, Runnable done) {
+            recorded = done;
+            runs.submit(name, () -> {
+                OperationTrace trace = new OperationTrace(input, TRACE_LIMIT);
+                TracedArray traced = new TracedArray(input.clone(), trace);
+                long start = System.nanoTime();
+                try {
+                    sort.accept(traced);
+                } catch (IllegalStateException e) {
+                    if (!trace.isTruncated()) {
+                        throw e;
+                    }
+                }
+                long elapsed = System.nanoTime() - start;
+                SwingUtilities.invokeLater(() -> {
+                    player = new TracePlayer(trace);
+                    player.setChangeListener(renderer::markDirty);
+                    truncated = trace.isTruncated();
+                    recordNanos = elapsed;
+                    done.run();
+                    FrameClock.get().requestRepaint(this);
+                });
+            });
+        }
+
+        
+        protected void paintComponent(Graphics g) {
+            super.paintComponent(g);
+            boolean end = player == null || player.isAtEnd();
+            renderer.paint(g, player == null ? input : player.state(), player == null ? null : player.owners(),
+                    end ? -1 : player.highlightFirst(), end ? -1 : player.highlightSecond(), getWidth(), getHeight());
+            paintHud(g);
+        }
+
+        private void paintHud(Graphics g) {
+            String[] lines;
+            if (failure != null) {
+                lines = new String[] { name, "failed: " + failure };
+            } else if (player == null) {
+                lines = new String[] { name, "recording..." };
+            } else {
+                String result;
+                if (truncated) {
+                    result = "did not finish: trace limit reached";
+                } else if (player.isAtEnd()) {
+                    result = String.format("#%d, finished at %.2f s", place, finishNanos / 1e9);
+                } else {
+                    result = "running";
+                }
+                lines = new String[] {
+                        String.format("%s  %s", name, result),
+                        String.format("step %,d / %,d (%.0f%%)", player.position(), player.length(),
+                                player.length() == 0 ? 100.0 : 100.0 * player.position() / player.length()),
+                        String.format("cmp %,d  swp %,d  wr %,d", player.comparisons(), player.swaps(),
+                                player.writes()),
+                        String.format("recorded in %.2f ms", recordNanos / 1e6) };
+            }
+            g.setFont(HUD_FONT);
+            FontMetrics metrics = g.getFontMetrics();
+            int width = 0;
+            for (String line : lines) {
+                width = Math.max(width, metrics.stringWidth(line));
+            }
+            g.setColor(HUD_BACKGROUND);
+            g.fillRect(4, 4, width + 12, lines.length * metrics.getHeight() + 8);
+            g.setColor(Color.WHITE);
+            for (int i = 0; i < lines.length; i++) {
+                g.drawString(lines[i], 10, 8 + metrics.getAscent() + i * metrics.getHeight());
+            }
+        }
+    }
+}
+
+// Sorts int32 files larger than the sort's memory budget with ExternalSort and draws
+// its runs: each column is one run, filling in as the run is spilled and draining
+// as the merge consumes it, with the merged output growing along the bottom.
+class ExternalSortVisualizer extends JPanel {
+    private static final Color[] RUN_COLORS = { new Color(0x4E79A7), new Color(0xF28E2B), new Color(0x59A14F),
+            new Color(0xB07AA1), new Color(0x76B7B2), new Color(0xEDC948) };
+    private static final int MARGIN = 10;
+    private static final int OUTPUT_HEIGHT = 30;
+
+    // Generated input sizes and memory budgets, in MB.
+    private final JComboBox<Integer> sizeSelector = new JComboBox<>(new Integer[] { 16, 128, 512, 1024, 2048,
+            4096 });
+    private final JComboBox<Integer> memorySelector = new JComboBox<>(new Integer[] { 4, 16, 64, 256 });
+    private final JLabel statusLabel = new JLabel();
+    private final JPanel controlPanel = new JPanel();
+    private final FrameClock.FrameListener progressFrame = elapsedNanos -> FrameClock.get().requestRepaint(this);
+    private final RunService sorts = new RunService(new RunService.RunListener() {
+        public void started(String name) {
+            FrameClock.get().addListener(progressFrame);
+        }
+
+        public void cancelled(String name, long elapsedNanos) {
+            ended(name + " cancelled");
+        }
+
+        public void failed(String name, Throwable error, long elapsedNanos) {
+            ended(name + " failed: " + error.getMessage());
+        }
+    });
+    private volatile ExternalSort sorter;
+
+    public ExternalSortVisualizer() {
+        sizeSelector.setSelectedItem(512);
+        memorySelector.setSelectedItem(16);
+        JButton generateButton = new JButton("Sort Random File");
+        JButton fileButton = new JButton("Sort File...");
+        JButton cancelButton = new JButton("Cancel");
+        generateButton.addActionListener(e -> sortRandomFile());
+        fileButton.addActionListener(e -> {
+            JFileChooser chooser = new JFileChooser();
+            if (chooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
+                sortFile(chooser.getSelectedFile().toPath());
+            }
+        });
+        cancelButton.addActionListener(e -> sorts.cancel());
+
+        controlPanel.add(new JLabel("Input MB"));
+        controlPanel.add(sizeSelector);
+        controlPanel.add(new JLabel("Memory MB"));
+        controlPanel.add(memorySelector);
+        controlPanel.add(generateButton);
+        controlPanel.add(fileButton);
+        controlPanel.add(cancelButton);
+        controlPanel.add(statusLabel);
+        setLayout(new BorderLayout());
+        add(controlPanel, BorderLayout.SOUTH);
+    }
+
+    // Writes seeded random values to a temporary file, sorts it, then deletes both files.
+    private void sortRandomFile() {
+        long values = (long) (int) sizeSelector.getSelectedItem() << 18;
+        long memory = (long) (int) memorySelector.getSelectedItem() << 20;
+        statusLabel.setText("Generating input...");
+        sorts.submit("External sort", () -> {
+            java.nio.file.Path in = null, out = null;
+            try {
+                in = java.nio.file.Files.createTempFile("external-input", ".bin");
+                out = java.nio.file.Files.createTempFile("external-output", ".bin");
+                writeRandom(in, values);
+                sort(in, out, memory);
+            } catch (java.io.IOException e) {
+                throw new java.io.UncheckedIOException(e);
+            } finally {
+                try {
+                    if (in != null) {
+                        java.nio.file.Files.deleteIfExists(in);
+                    }
+                    if (out != null) {
+                        java.nio.file.Files.deleteIfExists(out);
+                    }
+                } catch (java.io.IOException e) {
+                    System.err.println("Could not delete temporary sort file: " + e.getMessage());
+                }
+            }
+        });
+    }
+
+    // Sorts a little-endian int32 file into name.sorted.bin next to it.
+    private void sortFile(java.nio.file.Path in) {
+        String name = in.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        java.nio.file.Path out = in.resolveSibling((dot > 0 ? name.substring(0, dot) : name) + ".sorted.bin");
+        long memory = (long) (int) memorySelector.getSelectedItem() << 20;
+        statusLabel.setText("Sorting " + name + "...");
+        sorts.submit("External sort", () -> {
+            try {
+                sort(in, out, memory);
+            } catch (java.io.IOException e) {
+                throw new java.io.UncheckedIOException(e);
+            }
+        });
+    }
+
+    private void sort(java.nio.file.Path in, java.nio.file.Path out, long memory) throws java.io.IOException {
+        ExternalSort sort = new ExternalSort(in, out, memory);
+        sorter = sort;
+        SwingUtilities.invokeLater(() -> statusLabel.setText("Sorting..."));
+        sort.run();
+        ended(String.format("%,d MB in %d runs: runs %.0f MB/s, merge %.0f MB/s, overall %.0f MB/s",
+                sort.values() >> 18, sort.runCount(), sort.megabytesPerSecond(sort.produceNanos()),
+                sort.megabytesPerSecond(sort.mergeNanos()),
+                sort.megabytesPerSecond(sort.produceNanos() + sort.mergeNanos())));
+    }
+
+    private void writeRandom(java.nio.file.Path path, long values) throws java.io.IOException {
+        java.util.SplittableRandom random = new java.util.SplittableRandom(values);
+        java.nio.ByteBuffer buffer = java.nio.ByteBuffer.allocateDirect(1 << 20)
+                .order(java.nio.ByteOrder.LITTLE_ENDIAN);
+        try (java.nio.channels.FileChannel channel = java.nio.channels.FileChannel.open(path,
+                java.nio.file.StandardOpenOption.WRITE)) {
+            for (long i = 0; i < values; i++) {
+                if (!buffer.hasRemaining()) {
+                    buffer.flip();
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                    buffer.clear();
+                    RunService.checkCancelled();
+                }
+                buffer.putInt(random.nextInt());
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    private void ended(String message) {
+        SwingUtilities.invokeLater(() -> {
+            FrameClock.get().removeListener(progressFrame);
+            statusLabel.setText(message);
+            FrameClock.get().requestRepaint(this);
+        });
+    }
+
+    
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        ExternalSort sort = sorter;
+        int runs = sort == null ? 0 : sort.runCount();
+        if (runs == 0) {
+            return;
+        }
+        int w = getWidth() - 2 * MARGIN;
+        int bottom = getHeight() - controlPanel.getHeight() - OUTPUT_HEIGHT - 2 * MARGIN;
+        int runHeight = bottom - 3 * MARGIN;
+        for (int run = 0; run < runs; run++) {
+            int x = MARGIN + (int) ((long) run * w / runs);
+            int width = Math.max(1, MARGIN + (int) ((long) (run + 1) * w / runs) - x - (w / runs >= 4 ? 1 : 0));
+            long size = sort.runSize(run);
+            Color color = RUN_COLORS[run % RUN_COLORS.length];
+            if (size == 0) {
+                g.setColor(Color.LIGHT_GRAY);
+                g.drawRect(x, bottom - runHeight, width - 1, runHeight);
+                continue;
+            }
+            int height = (int) (runHeight * size / sort.runLength());
+            int remaining = (int) (height * (size - sort.consumed(run)) / size);
+            g.setColor(new Color(color.getRed(), color.getGreen(), color.getBlue(), 60));
+            g.fillRect(x, bottom - height, width, height - remaining);
+            g.setColor(color);
+            g.fillRect(x, bottom - remaining, width, remaining);
+        }
+        int outputY = bottom + MARGIN;
+        g.setColor(Color.LIGHT_GRAY);
+        g.drawRect(MARGIN, outputY, w - 1, OUTPUT_HEIGHT);
+        g.setColor(Color.DARK_GRAY);
+        g.fillRect(MARGIN, outputY, (int) (w * sort.merged() / Math.max(1, sort.values())), OUTPUT_HEIGHT);
+
+        String text;
+        if (sort.phase() == ExternalSort.PRODUCING) {
+            text = String.format("Writing runs: %d / %d, %.0f MB/s", sort.runsWritten(), runs,
+                    sort.currentMegabytesPerSecond());
+        } else if (sort.phase() == ExternalSort.MERGING) {
+            text = String.format("Merging %d runs: %.0f%%, %.0f MB/s", runs, 100.0 * sort.merged() / sort.values(),
+                    sort.currentMegabytesPerSecond());
+        } else {
+            text = String.format("Sorted %,d values", sort.values());
+        }
+        g.setColor(Color.BLACK);
+        g.drawString(text, MARGIN, MARGIN + g.getFontMetrics().getAscent());
+    }
+}
+
+class GraphTraversalVisualizer extends JPanel {
+    private static final java.nio.file.Path SESSION_FILE = java.nio.file.Paths.get(System.getProperty("user.home"),
+            ".algorithm-visualizer", "last-graph.bin");
+    private GraphPanel graphPanel;
+    private JPanel controlPanel;
+    private JLabel statusLabel;
+    private final RunService loader = new RunService(new RunService.RunListener() {
+        public void failed(String name, Throwable error, long elapsedNanos) {
+            SwingUtilities.invokeLater(() -> statusLabel.setText(name + " failed: " + error.getMessage()));
+        }
+    });
+
+    public GraphTraversalVisualizer() {
+        graphPanel = new GraphPanel();
+        controlPanel = new JPanel();
+
+        String[] traversalOptions = { "BFS", "DFS", "Parallel BFS", "Dijkstra", "A*", "Bidirectional Dijkstra" };
+        JComboBox<String> traversalSelector = new JComboBox<>(traversalOptions);
+        JButton startButton = new JButton("Start Traversal");
+        JButton reuseButton = new JButton("Reuse Graph");
+        JButton resetButton = new JButton("Reset Graph");
+        JButton loadButton = new JButton("Load Graph");
+        JButton saveButton = new JButton("Save Graph");
+        JButton layoutButton = new JButton("Auto Layout");
+        JButton exportButton = new JButton("Export Frames");
+        JButton traceButton = new JButton("Play Trace");
+        JCheckBox allComponentsBox = new JCheckBox("All Components");
+        JCheckBox colorComponentsBox = new JCheckBox("Color Components");
+        JLabel componentsLabel = new JLabel();
+        statusLabel = new JLabel();
+
+        startButton.addActionListener(e -> {
+            String method = (String) traversalSelector.getSelectedItem();
+            Graph graph = graphPanel.getGraph();
+            boolean search = !method.equals("BFS") && !method.equals("DFS") && !method.equals("Parallel BFS");
+            if (search && graph.nodeCount() > 0 && !graphPanel.sameComponent(0, graphPanel.getSearchTarget())) {
+                // Union-find answers this without settling the whole of node 1's component.
+                statusLabel.setText(String.format("%s: %d is unreachable from 1", method,
+                        graphPanel.getSearchTarget() + 1));
+                return;
+            }
+            graphPanel.startTraversal(method);
+            statusLabel.setText(null);
+            if (!search && !graphPanel.isTraverseAllComponents() && graphPanel.getComponentCount() > 1) {
+                statusLabel.setText(String.format("%s from node 1 skips %,d other components", method,
+                        graphPanel.getComponentCount() - 1));
+            }
+            showLevelStats(graphPanel.getLevelResult());
+            showSearchStats(method, graphPanel.getSearchResult());
+        });
+        allComponentsBox.setToolTipText("BFS and DFS go on to every component, not just node 1's");
+        allComponentsBox.addActionListener(e -> graphPanel.setTraverseAllComponents(allComponentsBox.isSelected()));
+        colorComponentsBox.addActionListener(e -> graphPanel.setColorComponents(colorComponentsBox.isSelected()));
+        graphPanel.addPropertyChangeListener("connectivity", e -> componentsLabel.setText(String.format(
+                "%,d components%s", graphPanel.getComponentCount(), graphPanel.hasCycle() ? ", cyclic" : "")));
+
+        reuseButton.addActionListener(e -> {
+            // An empty panel picks up the graph saved when the app was last closed.
+            if (graphPanel.getGraph().nodeCount() == 0 && java.nio.file.Files.exists(SESSION_FILE)) {
+                loadGraph(SESSION_FILE);
+            } else {
+                graphPanel.reuseGraph();
+            }
+        });
+
+        resetButton.addActionListener(e -> graphPanel.resetGraph());
+
+        layoutButton.addActionListener(e -> {
+            if (graphPanel.isLayoutRunning()) {
+                graphPanel.stopLayout();
+            } else {
+                graphPanel.startLayout();
+            }
+        });
+        graphPanel.addPropertyChangeListener("layoutRunning", e -> {
+            boolean running = (Boolean) e.getNewValue();
+            layoutButton.setText(running ? "Stop Layout" : "Auto Layout");
+            statusLabel.setText(running ? "Laying out..." : "Layout ran "
+                    + graphPanel.getLayoutIterations() + " iterations");
+        });
+
+        exportButton.addActionListener(e -> {
+            if (graphPanel.isExporting()) {
+                graphPanel.cancelExport();
+                return;
+            }
+            JFileChooser chooser = new JFileChooser();
+            chooser.setSelectedFile(new java.io.File("traversal.gif"));
+            if (chooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION && !graphPanel.exportTraversal(
+                    (String) traversalSelector.getSelectedItem(), chooser.getSelectedFile().toPath())) {
+                statusLabel.setText("Wait for the traversal or layout to finish before exporting");
+            }
+        });
+        graphPanel.addPropertyChangeListener("exporting",
+                e -> exportButton.setText((Boolean) e.getNewValue() ? "Cancel Export" : "Export Frames"));
+        graphPanel.addPropertyChangeListener("exportStatus", e -> statusLabel.setText((String) e.getNewValue()));
+
+        loadButton.addActionListener(e -> {
+            JFileChooser chooser = new JFileChooser();
+            if (chooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
+                loadGraph(chooser.getSelectedFile().toPath());
+            }
+        });
+        traceButton.addActionListener(e -> {
+            JFileChooser chooser = new JFileChooser();
+            if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+                return;
+            }
+            try {
+                TraceFile file = TraceFile.open(chooser.getSelectedFile().toPath());
+                statusLabel.setText(graphPanel.playTrace(file) ? String.format("Playing %,d steps", file.length())
+                        : "The trace is for a graph of " + file.valueCount() + " nodes, or a run is in progress");
+            } catch (java.io.IOException ex) {
+                statusLabel.setText("Could not open trace: " + ex.getMessage());
+            }
+        });
+        saveButton.addActionListener(e -> {
+            JFileChooser chooser = new JFileChooser();
+            chooser.setSelectedFile(new java.io.File("graph.bin"));
+            if (chooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
+                try {
+                    GraphIO.write(graphPanel.getGraph(), chooser.getSelectedFile().toPath());
+                } catch (java.io.IOException ex) {
+                    statusLabel.setText("Save failed: " + ex.getMessage());
+                }
+            }
+        });
+
+        JPanel traversalRow = new JPanel();
+        traversalRow.add(traversalSelector);
+        traversalRow.add(new SpeedControl(graphPanel.getPacer()));
+        traversalRow.add(startButton);
+        traversalRow.add(traceButton);
+        JPanel componentRow = new JPanel();
+        componentRow.add(allComponentsBox);
+        componentRow.add(colorComponentsBox);
+        componentRow.add(componentsLabel);
+        componentRow.add(statusLabel);
+        JPanel graphRow = new JPanel();
+        graphRow.add(reuseButton);
+        graphRow.add(resetButton);
+        graphRow.add(loadButton);
+        graphRow.add(saveButton);
+        graphRow.add(layoutButton);
+        graphRow.add(exportButton);
+        controlPanel.setLayout(new GridLayout(0, 1));
+        controlPanel.add(traversalRow);
+        controlPanel.add(componentRow);
+        controlPanel.add(graphRow);
+
+        setLayout(new BorderLayout());
+        add(graphPanel, BorderLayout.CENTER);
+        add(controlPanel, BorderLayout.SOUTH);
+    }
+
+    private void showLevelStats(ParallelBfs.Result result) {
+        if (result == null) {
+            statusLabel.setToolTipText(null);
+            return;
+        }
+        statusLabel.setText(String.format("%,d nodes reached in %d levels, %.2f ms", result.reached, result.levels,
+                result.totalNanos / 1e6));
+        StringBuilder levels = new StringBuilder("<html>");
+        for (int level = 0; level < result.levels; level++) {
+            levels.append(String.format("Level %d: %,d nodes, %s, %.3f ms<br>", level, result.frontierSizes[level],
+                    result.bottomUp[level] ? "bottom-up" : "top-down", result.levelNanos[level] / 1e6));
+        }
+        statusLabel.setToolTipText(levels.append("</html>").toString());
+    }
+
+    private void showSearchStats(String method, ShortestPaths search) {
+        if (search == null) {
+            return;
+        }
+        String distance = Double.isInfinite(search.distance()) ? "unreachable"
+                : String.format("distance %.1f", search.distance());
+        statusLabel.setText(String.format("%s %d to %d: %s, %,d nodes settled, %,d edges relaxed, %.2f ms", method,
+                search.source() + 1, search.target() + 1, distance, search.settledCount(), search.relaxations(),
+                search.elapsedNanos() / 1e6));
+    }
+
+    // Parses off the EDT and swaps the finished graph in.
+    private void loadGraph(java.nio.file.Path path) {
+        statusLabel.setText("Loading " + path.getFileName() + "...");
+        loader.submit("Load " + path.getFileName(), () -> {
+            long start = System.nanoTime();
+            Graph graph;
+            try {
+                graph = GraphIO.read(path);
+            } catch (java.io.IOException e) {
+                throw new java.io.UncheckedIOException(e);
+            }
+            long elapsed = System.nanoTime() - start;
+            SwingUtilities.invokeLater(() -> {
+                graphPanel.setGraph(graph);
+                statusLabel.setText(String.format("%,d nodes, %,d edges in %.0f ms", graph.nodeCount(),
+                        graph.edgeCount(), elapsed / 1e6));
+            });
+        });
+    }
+
+    public void saveSession() {
+        if (graphPanel.getGraph().nodeCount() == 0) {
+            return;
+        }
+        try {
+            java.nio.file.Files.createDirectories(SESSION_FILE.getParent());
+            GraphIO.write(graphPanel.getGraph(), SESSION_FILE);
+        } catch (java.io.IOException e) {
+            System.err.println("Could not save graph session: " + e.getMessage());
+        }
+    }
+}
+
+class SpeedControl extends JPanel {
+    private final JSlider slider = new JSlider(-10, 60, 0);
+    private final JLabel valueLabel = new JLabel();
+    private final FrameClock.Pacer pacer;
+
+    // The slider is logarithmic: each tick is a tenth of a decade, 0.1 to 1,000,000 steps/s.
+    public SpeedControl(FrameClock.Pacer pacer) {
+        this.pacer = pacer;
+        slider.setValue((int) Math.round(Math.log10(pacer.stepsPerSecond()) * 10));
+        slider.addChangeListener(e -> updateSpeed());
+        valueLabel.setPreferredSize(new Dimension(70, valueLabel.getPreferredSize().height));
+
+        add(new JLabel("Steps/s"));
+        add(slider);
+        add(valueLabel);
+        updateSpeed();
+    }
+
+    private void updateSpeed() {
+        pacer.setStepsPerSecond(Math.pow(10, slider.getValue() / 10.0));
+        double stepsPerSecond = pacer.stepsPerSecond();
+        valueLabel.setText(stepsPerSecond < 10 ? String.format("%.1f", stepsPerSecond)
+                : String.format("%,.0f", stepsPerSecond));
+    }
+}
+
+class GraphPanel extends JPanel {
+    private final int NODE_RADIUS = 40;
+    private Graph graph;
+    private final SpatialGrid index = new SpatialGrid(NODE_RADIUS * 2);
+    private final GraphRenderer renderer;
+    // Screen area whose nodes changed since the last frame, or null.
+    private Rectangle dirtyArea;
+    private final Rectangle nodeBounds = new Rectangle();
+    private Point panFrom;
+    private final FrameClock.Pacer pacer = new FrameClock.Pacer(2);
+    private final FrameClock.FrameListener traversalFrame = this::traversalFrame;
+    private Runnable traversalStep;
+    // BFS queue entries are marked discovered when enqueued, so the queue never holds a node twice.
+    private int[] traversalQueue = new int[0];
+    private int queueHead, queueTail;
+    private int[] traversalStack = new int[16];
+    private int stackSize;
+    private boolean[] visited = new boolean[0];
+    private boolean[] discovered = new boolean[0];
+    private String currentTraversalMethod;
+    // Parallel BFS runs up front; playback then reveals one depth level per step.
+    private ParallelBfs.Result levelResult;
+    private Color[] levelColors = new Color[0];
+    private int levelsShown;
+    // The reached nodes grouped by depth: level l is levelOrder[levelStarts[l]..levelStarts[l + 1]).
+    private int[] levelOrder = new int[0];
+    private int[] levelStarts = new int[1];
+    // Shortest-path searches also run up front and replay their settled nodes, then the path.
+    private final ShortestPaths shortestPaths = new ShortestPaths();
+    private ShortestPaths searchResult;
+    private int settledShown;
+    private TracePlayer tracePlayer;
+    // Nodes recolored since the last published frame, streamed as RGB values.
+    private final TraceServer.Session live = TraceServer.register("Graph");
+    private int[] liveNodes = new int[64], liveColors = new int[64];
+    private int liveCount;
+    private boolean liveOverflow;
+    private boolean[] onPath = new boolean[0];
+    // Kept up to date on every added node and edge, so connectivity questions never need a traversal.
+    private UnionFind components = new UnionFind();
+    private static final Color[] COMPONENT_COLORS = new Color[32];
+    private boolean colorComponents;
+    // BFS and DFS go on from the next unreached node when their component is done.
+    private boolean traverseAllComponents;
+    private int nextComponentStart;
+    // Layout iterations run off the EDT; each frame applies the newest published positions.
+    private static final int LAYOUT_ITERATIONS = 500;
+    private final RunService layoutRuns = new RunService(new RunService.RunListener() {
+        public void failed(String name, Throwable error, long elapsedNanos) {
+            System.err.println(name + " failed: " + error);
+        }
+    });
+    private final FrameClock.FrameListener layoutFrame = this::layoutFrame;
+    private ForceLayout layout;
+    private int layoutIterations;
+    // Exports record a traversal's color changes on the EDT, then render them off it.
+    // Edits and layouts wait until the export ends.
+    private final RunService exports = new RunService(new RunService.RunListener() {
+        public void cancelled(String name, long elapsedNanos) {
+            exportEnded(name + " cancelled");
+        }
+
+        public void finished(String name, long elapsedNanos) {
+            exportEnded(String.format("%s done in %.1f s", name, elapsedNanos / 1e9));
+        }
+
+        public void failed(String name, Throwable error, long elapsedNanos) {
+            exportEnded(name + " failed: " + error.getMessage());
+        }
+    });
+    private boolean exporting;
+    // Nodes passed to markDirty while recording, or null when not recording.
+    private int[] recordedNodes;
+    private int recordedCount;
+    private boolean isTraversalRunning;
+    private int selectedNode;
+
+    static {
+        for (int i = 0; i < COMPONENT_COLORS.length; i++) {
+            COMPONENT_COLORS[i] = Color.getHSBColor(i * 0.618f % 1f, 0.45f, 0.95f);
+        }
+    }
+
+    public GraphPanel() {
+        graph = new Graph();
+        renderer = new GraphRenderer(NODE_RADIUS, getBackground());
+        isTraversalRunning = false;
+        selectedNode = -1;
+
+        // Left click edits the graph; dragging with any other button pans and the wheel zooms.
+        MouseAdapter mouse = new MouseAdapter() {
+            
+            public void mousePressed(MouseEvent e) {
+                if (!SwingUtilities.isLeftMouseButton(e)) {
+                    panFrom = e.getPoint();
+                    return;
+                }
+                if (isTraversalRunning || layout != null || exporting)
+                    return;
+
+                int x = renderer.toWorldX(e.getX()), y = renderer.toWorldY(e.getY());
+                int clickedNode = getNodeAtPosition(x, y);
+                if (clickedNode < 0) {
+                    addNode(x, y);
+                } else if (selectedNode < 0) {
+                    selectNode(clickedNode);
+                } else if (selectedNode != clickedNode) {
+                    if (!addEdge(selectedNode, clickedNode)) {
+                        promptWeight(selectedNode, clickedNode);
+                    }
+                    selectNode(-1);
+                } else {
+                    selectNode(-1);
+                }
+                repaintDirty();
+            }
+
+            public void mouseDragged(MouseEvent e) {
+                if (panFrom != null) {
+                    renderer.pan(e.getX() - panFrom.x, e.getY() - panFrom.y);
+                    panFrom = e.getPoint();
+                    FrameClock.get().requestRepaint(GraphPanel.this);
+                }
+            }
+
+            public void mouseReleased(MouseEvent e) {
+                panFrom = null;
+            }
+
+            public void mouseWheelMoved(MouseWheelEvent e) {
+                renderer.zoom(Math.pow(1.15, -e.getPreciseWheelRotation()), e.getX(), e.getY());
+                FrameClock.get().requestRepaint(GraphPanel.this);
+            }
+        };
+        addMouseListener(mouse);
+        addMouseMotionListener(mouse);
+        addMouseWheelListener(mouse);
+    }
+
+    public FrameClock.Pacer getPacer() {
+        return pacer;
+    }
+
+    public Graph getGraph() {
+        return graph;
+    }
+
+    public ParallelBfs.Result getLevelResult() {
+        return levelResult;
+    }
+
+    public ShortestPaths getSearchResult() {
+        return searchResult;
+    }
+
+    public void setGraph(Graph graph) {
+        stopLayout();
+        resetTraversalData();
+        this.graph = graph;
+        components = UnionFind.of(graph);
+        rebuildIndex();
+        visited = new boolean[Math.max(16, graph.nodeCount())];
+        publishLive();
+        connectivityChanged();
+    }
+
+    private void rebuildIndex() {
+        fillIndex(index, graph);
+        renderer.invalidateEdges();
+        FrameClock.get().requestRepaint(this);
+    }
+
+    private static void fillIndex(SpatialGrid index, Graph graph) {
+        index.clear();
+        for (int node = 0; node < graph.nodeCount(); node++) {
+            index.addNode(node, graph.x(node), graph.y(node));
+        }
+        for (int edge = 0; edge < graph.edgeCount(); edge++) {
+            int a = graph.edgeSource(edge), b = graph.edgeTarget(edge);
+            index.addEdge(edge, graph.x(a), graph.y(a), graph.x(b), graph.y(b));
+        }
+    }
+
+    public boolean isLayoutRunning() {
+        return layout != null;
+    }
+
+    public int getLayoutIterations() {
+        return layoutIterations;
+    }
+
+    // Edits are disabled while a layout runs; traversals keep working on the moving graph.
+    public void startLayout() {
+        if (layout != null || exporting || graph.nodeCount() == 0) {
+            return;
+        }
+        ForceLayout started = new ForceLayout(graph);
+        layout = started;
+        FrameClock.get().addListener(layoutFrame);
+        layoutRuns.submit("Layout", () -> {
+            try {
+                started.run(LAYOUT_ITERATIONS);
+            } finally {
+                SwingUtilities.invokeLater(() -> layoutEnded(started));
+            }
+        });
+        firePropertyChange("layoutRunning", false, true);
+    }
+
+    public void stopLayout() {
+        if (layout != null) {
+            layoutRuns.cancel();
+            layoutEnded(layout);
+        }
+    }
+
+    private void layoutEnded(ForceLayout ended) {
+        if (layout != ended) {
+            return;
+        }
+        layoutFrame(0);
+        layoutIterations = ended.iterations();
+        layout = null;
+        FrameClock.get().removeListener(layoutFrame);
+        firePropertyChange("layoutRunning", true, false);
+    }
+
+    private void layoutFrame(long elapsedNanos) {
+        int[] positions = layout.takePositions();
+        if (positions == null || positions.length != 2 * graph.nodeCount()) {
+            return;
+        }
+        // Move only what the step moved in the index; a full rebuild is for graph loads.
+        for (int edge = 0; edge < graph.edgeCount(); edge++) {
+            int a = graph.edgeSource(edge), b = graph.edgeTarget(edge);
+            int ax = positions[2 * a], ay = positions[2 * a + 1], bx = positions[2 * b], by = positions[2 * b + 1];
+            if (ax != graph.x(a) || ay != graph.y(a) || bx != graph.x(b) || by != graph.y(b)) {
+                index.removeEdge(edge, graph.x(a), graph.y(a), graph.x(b), graph.y(b));
+                index.addEdge(edge, ax, ay, bx, by);
+            }
+        }
+        boolean moved = false;
+        for (int node = 0; node < graph.nodeCount(); node++) {
+            int x = positions[2 * node], y = positions[2 * node + 1];
+            if (x != graph.x(node) || y != graph.y(node)) {
+                index.moveNode(node, graph.x(node), graph.y(node), x, y);
+                graph.setPosition(node, x, y);
+                moved = true;
+            }
+        }
+        if (moved) {
+            renderer.invalidateEdges();
+            FrameClock.get().requestRepaint(this);
+        }
+    }
+
+    public int addNode(int x, int y) {
+        int node = graph.addNode(x, y);
+        index.addNode(node, x, y);
+        components.addNode();
+        if (visited.length < graph.nodeCount()) {
+            visited = java.util.Arrays.copyOf(visited, Math.max(16, visited.length * 2));
+        }
+        markDirty(node);
+        connectivityChanged();
+        return node;
+    }
+
+    public boolean addEdge(int start, int end) {
+        if (!graph.addEdge(start, end)) {
+            return false;
+        }
+        int edge = (int) graph.edgeCount() - 1;
+        index.addEdge(edge, graph.x(start), graph.y(start), graph.x(end), graph.y(end));
+        renderer.edgeAdded(graph, edge);
+        // The union of both endpoint bounds covers the whole line.
+        markDirty(start);
+        markDirty(end);
+        if (components.union(start, end) && colorComponents) {
+            // One side of the merge changes color, and its nodes are not listed anywhere.
+            liveOverflow = true;
+            FrameClock.get().requestRepaint(this);
+        }
+        connectivityChanged();
+        return true;
+    }
+
+    private void connectivityChanged() {
+        firePropertyChange("connectivity", null, components);
+    }
+
+    public int getComponentCount() {
+        return components.componentCount();
+    }
+
+    public boolean hasCycle() {
+        return components.hasCycle();
+    }
+
+    public boolean sameComponent(int a, int b) {
+        return components.connected(a, b);
+    }
+
+    public void setColorComponents(boolean colorComponents) {
+        this.colorComponents = colorComponents;
+        liveOverflow = true;
+        publishLive();
+        FrameClock.get().requestRepaint(this);
+    }
+
+    public void setTraverseAllComponents(boolean traverseAllComponents) {
+        this.traverseAllComponents = traverseAllComponents;
+    }
+
+    public boolean isTraverseAllComponents() {
+        return traverseAllComponents;
+    }
+
+    // Searches run from node 1 to the selected node, or to the last node if none is selected.
+    public int getSearchTarget() {
+        return selectedNode > 0 ? selectedNode : graph.nodeCount() - 1;
+    }
+
+    private int getNodeAtPosition(int x, int y) {
+        return index.nodeAt(x, y, NODE_RADIUS, graph);
+    }
+
+    // Connecting two nodes that already share an edge edits its weight; blank restores the distance.
+    private void promptWeight(int a, int b) {
+        String input = JOptionPane.showInputDialog(this, "Weight of edge " + (a + 1) + "-" + (b + 1)
+                + " (blank for distance)", graph.weight(a, graph.indexOf(a, b)));
+        if (input == null) {
+            return;
+        }
+        try {
+            graph.setWeight(a, b, input.isBlank() ? Double.NaN : Double.parseDouble(input.trim()));
+        } catch (IllegalArgumentException e) {
+            JOptionPane.showMessageDialog(this, "Invalid weight: " + input);
+        }
+    }
+
+    private void selectNode(int node) {
+        if (selectedNode >= 0) {
+            markDirty(selectedNode);
+        }
+        selectedNode = node;
+        if (node >= 0) {
+            markDirty(node);
+        }
+    }
+
+    private void markDirty(int node) {
+        if (recordedNodes != null) {
+            if (recordedCount == recordedNodes.length) {
+                recordedNodes = java.util.Arrays.copyOf(recordedNodes, recordedCount * 2);
+            }
+            recordedNodes[recordedCount++] = node;
+        }
+        if (liveCount == liveNodes.length) {
+            if (liveCount > graph.nodeCount() / 4) {
+                liveOverflow = true;
+            } else {
+                liveNodes = java.util.Arrays.copyOf(liveNodes, liveCount * 2);
+                liveColors = new int[liveNodes.length];
+            }
+        }
+        if (liveCount < liveNodes.length) {
+            liveNodes[liveCount++] = node;
+        }
+        Rectangle bounds = renderer.nodeBounds(graph, node, nodeBounds);
+        if (dirtyArea == null) {
+            dirtyArea = new Rectangle(bounds);
+        } else {
+            dirtyArea.add(bounds);
+        }
+    }
+
+    private void repaintDirty() {
+        if (dirtyArea != null) {
+            repaint(dirtyArea);
+            dirtyArea = null;
+        }
+        publishLive();
+    }
+
+    private void publishLive() {
+        int n = graph.nodeCount();
+        if (liveOverflow || live.size() != n) {
+            int[] colors = new int[n];
+            for (int node = 0; node < n; node++) {
+                colors[node] = nodeColor(node).getRGB();
+            }
+            live.reset(colors, n);
+            liveOverflow = false;
+            liveCount = 0;
+        }
+        for (int i = 0; i < liveCount; i++) {
+            liveColors[i] = nodeColor(liveNodes[i]).getRGB();
+        }
+        live.publish(0, 0, selectedNode, -1, liveNodes, liveColors, liveCount);
+        liveCount = 0;
+    }
+
+    public void startTraversal(String method) {
+        if (graph.nodeCount() == 0 || isTraversalRunning)
+            return;
+        int targetNode = getSearchTarget();
+        resetTraversalData();
+        currentTraversalMethod = method;
+        isTraversalRunning = true;
+
+        int startNode = 0;
+        if (method.equals("BFS")) {
+            traversalQueue[queueTail++] = startNode;
+            discovered[startNode] = true;
+            startTraversalClock(this::bfsStep);
+        } else if (method.equals("Parallel BFS")) {
+            levelResult = ParallelBfs.run(graph, startNode);
+            groupByLevel(levelResult);
+            levelColor(levelResult.levels - 1);
+            startTraversalClock(this::levelStep);
+        } else if (method.equals("Dijkstra") || method.equals("A*") || method.equals("Bidirectional Dijkstra")) {
+            if (method.equals("Dijkstra")) {
+                shortestPaths.dijkstra(graph, startNode, targetNode);
+            } else if (method.equals("A*")) {
+                shortestPaths.aStar(graph, startNode, targetNode);
+            } else {
+                shortestPaths.bidirectionalDijkstra(graph, startNode, targetNode);
+            }
+            searchResult = shortestPaths;
+            startTraversalClock(this::searchStep);
+        } else {
+            traversalStack[stackSize++] = startNode;
+            startTraversalClock(this::dfsStep);
+        }
+    }
+
+    private void resetTraversalData() {
+        int n = graph.nodeCount();
+        if (traversalQueue.length < n) {
+            traversalQueue = new int[n];
+            discovered = new boolean[n];
+        } else {
+            java.util.Arrays.fill(discovered, false);
+        }
+        queueHead = queueTail = 0;
+        stackSize = 0;
+        nextComponentStart = 0;
+        java.util.Arrays.fill(visited, false);
+        levelResult = null;
+        levelsShown = 0;
+        searchResult = null;
+        settledShown = 0;
+        tracePlayer = null;
+        if (onPath.length < visited.length) {
+            onPath = new boolean[visited.length];
+        } else {
+            java.util.Arrays.fill(onPath, false);
+        }
+        isTraversalRunning = false;
+        selectedNode = -1;
+        liveOverflow = true;
+        FrameClock.get().removeListener(traversalFrame);
+    }
+
+    private void bfsStep() {
+        if (queueHead == queueTail && traverseAllComponents && nextUnreached(discovered)) {
+            discovered[nextComponentStart] = true;
+            traversalQueue[queueTail++] = nextComponentStart;
+        }
+        if (queueHead < queueTail) {
+            int node = traversalQueue[queueHead++];
+            visited[node] = true;
+            markDirty(node);
+            for (int k = 0, degree = graph.degree(node); k < degree; k++) {
+                int neighbor = graph.neighbor(node, k);
+                if (!discovered[neighbor]) {
+                    discovered[neighbor] = true;
+                    traversalQueue[queueTail++] = neighbor;
+                }
+            }
+        } else {
+            FrameClock.get().removeListener(traversalFrame);
+            isTraversalRunning = false;
+        }
+    }
+
+    private void dfsStep() {
+        if (stackSize == 0 && traverseAllComponents && nextUnreached(visited)) {
+            traversalStack[stackSize++] = nextComponentStart;
+        }
+        if (stackSize > 0) {
+            int node = traversalStack[--stackSize];
+            if (!visited[node]) {
+                visited[node] = true;
+                markDirty(node);
+                for (int k = 0, degree = graph.degree(node); k < degree; k++) {
+                    int neighbor = graph.neighbor(node, k);
+                    if (!visited[neighbor]) {
+                        if (stackSize == traversalStack.length) {
+                            traversalStack = java.util.Arrays.copyOf(traversalStack, stackSize * 2);
+                        }
+                        traversalStack[stackSize++] = neighbor;
+                    }
+                }
+            }
+        } else {
+            FrameClock.get().removeListener(traversalFrame);
+            isTraversalRunning = false;
+        }
+    }
+
+    // Moves nextComponentStart to the first node not yet reached, if any. The scan only
+    // moves forward, so a whole traverse-all run pays O(n) for it.
+    private boolean nextUnreached(boolean[] reached) {
+        int n = graph.nodeCount();
+        while (nextComponentStart < n && reached[nextComponentStart]) {
+            nextComponentStart++;
+        }
+        return nextComponentStart < n;
+    }
+
+    private void levelStep() {
+        if (levelsShown < levelResult.levels) {
+            // Small levels repaint node by node; large ones just repaint everything.
+            if (levelResult.frontierSizes[levelsShown] <= 1024 || recordedNodes != null) {
+                for (int i = levelStarts[levelsShown], end = levelStarts[levelsShown + 1]; i < end; i++) {
+                    markDirty(levelOrder[i]);
+                }
+            } else {
+                liveOverflow = true;
+                FrameClock.get().requestRepaint(this);
+            }
+            levelsShown++;
+        } else {
+            FrameClock.get().removeListener(traversalFrame);
+            isTraversalRunning = false;
+        }
+    }
+
+    // Counting sort of the reached nodes by depth, once per run, so each level step
+    // only touches its own nodes.
+    private void groupByLevel(ParallelBfs.Result result) {
+        int[] starts = new int[result.levels + 1];
+        for (int depth : result.depth) {
+            if (depth >= 0) {
+                starts[depth + 1]++;
+            }
+        }
+        for (int level = 0; level < result.levels; level++) {
+            starts[level + 1] += starts[level];
+        }
+        if (levelOrder.length < starts[result.levels]) {
+            levelOrder = new int[starts[result.levels]];
+        }
+        int[] next = java.util.Arrays.copyOf(starts, result.levels);
+        for (int node = 0; node < result.depth.length; node++) {
+            int depth = result.depth[node];
+            if (depth >= 0) {
+                levelOrder[next[depth]++] = node;
+            }
+        }
+        levelStarts = starts;
+    }
+
+    private void traceStep() {
+        if (!tracePlayer.stepForward()) {
+            FrameClock.get().removeListener(traversalFrame);
+            isTraversalRunning = false;
+        }
+    }
+
+    // Colors are made on first use, so a trace can bring levels the panel has not seen.
+    private Color levelColor(int level) {
+        if (level >= levelColors.length) {
+            int from = levelColors.length;
+            levelColors = java.util.Arrays.copyOf(levelColors, Math.max(level + 1, from * 2));
+            for (int l = from; l < levelColors.length; l++) {
+                levelColors[l] = Color.getHSBColor(l * 0.13f % 1f, 0.75f, 0.9f);
+            }
+        }
+        return levelColors[level];
+    }
+
+    // Replays a traversal trace over this graph at the current speed. Returns false if
+    // the trace was recorded on a graph with a different node count, or the panel is busy.
+    public boolean playTrace(TraceFile file) {
+        if (isTraversalRunning || layout != null || exporting || file.valueCount() != graph.nodeCount()) {
+            return false;
+        }
+        resetTraversalData();
+        tracePlayer = new TracePlayer(file);
+        tracePlayer.setChangeListener(this::markDirty);
+        isTraversalRunning = true;
+        startTraversalClock(this::traceStep);
+        FrameClock.get().requestRepaint(this);
+        return true;
+    }
+
+    private void searchStep() {
+        if (settledShown < searchResult.settledCount()) {
+            int node = searchResult.settledNode(settledShown++);
+            visited[node] = true;
+            markDirty(node);
+        } else {
+            for (int node : searchResult.path()) {
+                onPath[node] = true;
+                markDirty(node);
+            }
+            FrameClock.get().removeListener(traversalFrame);
+            isTraversalRunning = false;
+        }
+    }
+
+    private void startTraversalClock(Runnable traversalStep) {
+        this.traversalStep = traversalStep;
+        pacer.reset();
+        FrameClock.get().addListener(traversalFrame);
+    }
+
+    private void traversalFrame(long elapsedNanos) {
+        for (int steps = pacer.steps(elapsedNanos); steps > 0 && isTraversalRunning; steps--) {
+            traversalStep.run();
+        }
+        repaintDirty();
+    }
+
+    public boolean isExporting() {
+        return exporting;
+    }
+
+    public void cancelExport() {
+        exports.cancel();
+    }
+
+    // Runs method to completion without the clock, keeping the color each step gave the
+    // nodes it touched, then renders the recorded steps offscreen in the current view at
+    // the current speed. Returns false if a traversal, layout or export is in progress.
+    public boolean exportTraversal(String method, java.nio.file.Path path) {
+        if (isTraversalRunning || layout != null || exporting || graph.nodeCount() == 0) {
+            return false;
+        }
+        recordedNodes = new int[64];
+        recordedCount = 0;
+        Color[] colors = new Color[64];
+        int[] stepEnds = new int[64];
+        int steps = 0;
+        startTraversal(method);
+        while (isTraversalRunning) {
+            int from = recordedCount;
+            traversalStep.run();
+            if (colors.length < recordedCount) {
+                colors = java.util.Arrays.copyOf(colors, recordedNodes.length);
+            }
+            for (int i = from; i < recordedCount; i++) {
+                colors[i] = nodeColor(recordedNodes[i]);
+            }
+            if (steps == stepEnds.length) {
+                stepEnds = java.util.Arrays.copyOf(stepEnds, steps * 2);
+            }
+            stepEnds[steps++] = recordedCount;
+        }
+        int[] nodes = recordedNodes;
+        recordedNodes = null;
+        dirtyArea = null;
+        resetTraversalData();
+        FrameClock.get().requestRepaint(this);
+        Color[] startColors = new Color[graph.nodeCount()];
+        for (int node = 0; node < startColors.length; node++) {
+            startColors[node] = nodeColor(node);
+        }
+
+        Graph exported = graph;
+        GraphRenderer view = renderer.copyView();
+        int w = getWidth(), h = getHeight();
+        int stepsPerFrame = (int) Math.max(1, Math.round(pacer.stepsPerSecond() / AlgorithmVisualizer.EXPORT_FPS));
+        Color[] stepColors = colors;
+        int[] ends = stepEnds;
+        int stepCount = steps;
+        exporting = true;
+        firePropertyChange("exporting", false, true);
+        exports.submit("Export " + path.getFileName(), () -> renderTraversal(exported, view, startColors, nodes,
+                stepColors, ends, stepCount, stepsPerFrame, path, w, h));
+        return true;
+    }
+
+    private void renderTraversal(Graph exported, GraphRenderer view, Color[] nodeColors, int[] nodes, Color[] colors,
+            int[] stepEnds, int steps, int stepsPerFrame, java.nio.file.Path path, int w, int h) {
+        SpatialGrid grid = new SpatialGrid(NODE_RADIUS * 2);
+        fillIndex(grid, exported);
+        int total = (steps + stepsPerFrame - 1) / stepsPerFrame + 1;
+        int applied = 0;
+        try (FrameExporter exporter = new FrameExporter(path, 1000 / AlgorithmVisualizer.EXPORT_FPS)) {
+            for (int frame = 0; frame < total; frame++) {
+                RunService.checkCancelled();
+                int step = (int) Math.min(steps, (long) frame * stepsPerFrame);
+                for (int end = step > 0 ? stepEnds[step - 1] : 0; applied < end; applied++) {
+                    nodeColors[nodes[applied]] = colors[applied];
+                }
+                java.awt.image.BufferedImage image = new java.awt.image.BufferedImage(w, h,
+                        java.awt.image.BufferedImage.TYPE_INT_RGB);
+                Graphics2D g = image.createGraphics();
+                view.paint(g, exported, grid, node -> nodeColors[node], -1, w, h);
+                g.dispose();
+                exporter.addFrame(image);
+                if (frame % 100 == 0) {
+                    String progress = String.format("Exporting frame %,d / %,d", frame, total);
+                    SwingUtilities.invokeLater(() -> firePropertyChange("exportStatus", null, progress));
+                }
+            }
+        } catch (java.io.IOException e) {
+            throw new java.io.UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new java.util.concurrent.CancellationException();
+        }
+    }
+
+    private void exportEnded(String message) {
+        SwingUtilities.invokeLater(() -> {
+            exporting = false;
+            firePropertyChange("exporting", true, false);
+            firePropertyChange("exportStatus", null, message);
+        });
+    }
+
+    // A running export keeps painting the old graph, so the panel starts a new one
+    // instead of clearing it in place.
+    public void resetGraph() {
+        stopLayout();
+        resetTraversalData();
+        graph = new Graph();
+        components = new UnionFind();
+        index.clear();
+        renderer.invalidateEdges();
+        publishLive();
+        connectivityChanged();
+        FrameClock.get().requestRepaint(this);
+    }
+
+    public void reuseGraph() {
+        resetTraversalData();
+        publishLive();
+
+        FrameClock.get().requestRepaint(this);
+    }
+
+    
+    protected void paintComponent(Graphics g) {
+        long start = System.nanoTime();
+        renderer.paint(g, graph, index, this::nodeColor, selectedNode, getWidth(), getHeight());
+        UiMetrics.GRAPH_PAINT.record(System.nanoTime() - start);
+    }
+
+    private Color nodeColor(int i) {
+        if (levelResult != null) {
+            // Nodes added after the run have no depth.
+            int depth = i < levelResult.depth.length ? levelResult.depth[i] : -1;
+            return depth >= 0 && depth < levelsShown ? levelColors[depth] : Color.RED;
+        }
+        if (tracePlayer != null) {
+            int mark = i < tracePlayer.state().length ? tracePlayer.state()[i] : 0;
+            if (mark >= GraphTraversals.LEVEL) {
+                return levelColor(mark - GraphTraversals.LEVEL);
+            }
+            return mark == GraphTraversals.ON_PATH ? Color.MAGENTA : mark == GraphTraversals.VISITED ? Color.GREEN
+                    : Color.RED;
+        }
+        if (i < onPath.length && onPath[i]) {
+            return Color.MAGENTA;
+        }
+        if (visited[i]) {
+            return Color.GREEN;
+        }
+        return colorComponents ? COMPONENT_COLORS[(components.find(i) * 0x9E3779B9) >>> 27] : Color.RED;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,109 @@
+import java.util.Arrays;
+
+// Packed log of the operations a sort performs. Every event takes STRIDE ints:
+// [op << 28 | first, second, third], so a trace holds no per-event objects.
+// Appending past the limit marks the trace truncated and aborts the sort. A trace
+// created over a TraceFile.Writer streams its events to disk instead of keeping them.
+final class OperationTrace {
+    static final int COMPARE = 1;
+    static final int SWAP = 2;
+    static final int WRITE = 3;
+    static final int OWNER = 4;
+
+    static final int MAX_INDEX = (1 << 28) - 1;
+    private static final int STRIDE = 3;
+
+    private final int[] initial;
+    private final long limit;
+    private int[] events;
+    private final TraceFile.Writer sink;
+    private int size;
+    private boolean truncated;
+
+    public OperationTrace(int[] initial, long limit) {
+        this.initial = initial.clone();
+        this.limit = Math.min(limit, Integer.MAX_VALUE / STRIDE - 8);
+        this.events = new int[STRIDE * 1024];
+        this.sink = null;
+    }
+
+    // Only counts the events it streams to sink; op() and the other accessors stay empty.
+    public OperationTrace(int[] initial, TraceFile.Writer sink) {
+        this.initial = initial.clone();
+        this.limit = TraceFile.MAX_EVENTS;
+        this.events = null;
+        this.sink = sink;
+    }
+
+    public void compare(int i, int j) {
+        append(COMPARE, i, j, 0);
+    }
+
+    public void swap(int i, int j) {
+        append(SWAP, i, j, 0);
+    }
+
+    public void write(int i, int value, int previous) {
+        append(WRITE, i, value, previous);
+    }
+
+    // Marks [from, to) as last produced by the given worker, or tags it with a sort's phase.
+    public void owner(int from, int to, int worker) {
+        append(OWNER, from, to, worker);
+    }
+
+    private void append(int op, int first, int second, int third) {
+        if ((size & 0xFFFF) == 0) {
+            RunService.checkCancelled();
+        }
+        if (size >= limit) {
+            truncated = true;
+            if (sink != null) {
+                sink.setTruncated(true);
+            }
+            throw new IllegalStateException("Trace limit of " + limit + " events reached");
+        }
+        if (sink != null) {
+            sink.append(op, first, second, third);
+            size++;
+            return;
+        }
+        int at = size * STRIDE;
+        if (at + STRIDE > events.length) {
+            long grown = Math.min((long) events.length * 2, (limit + 1) * STRIDE);
+            events = Arrays.copyOf(events, (int) grown);
+        }
+        events[at] = op << 28 | first;
+        events[at + 1] = second;
+        events[at + 2] = third;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    public int[] initialState() {
+        return initial.clone();
+    }
+
+    public int op(int event) {
+        return events[event * STRIDE] >>> 28;
+    }
+
+    public int first(int event) {
+        return events[event * STRIDE] & MAX_INDEX;
+    }
+
+    public int second(int event) {
+        return events[event * STRIDE + 1];
+    }
+
+    public int third(int event) {
+        return events[event * STRIDE + 2];
+    }
+}
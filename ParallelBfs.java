@@ -0,0 +1,161 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+// Level-synchronous BFS that expands a whole frontier per level across the common
+// pool. Visited and frontier sets are bitsets updated with atomic ORs. Each level
+// runs either top-down (scan the frontier's edges) or bottom-up (unvisited nodes
+// look for a parent in the frontier), switching with the usual direction-optimizing
+// heuristic.
+final class ParallelBfs {
+    private static final VarHandle WORDS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final int ALPHA = 14;
+    private static final int BETA = 24;
+    private static final int WORDS_PER_TASK = 64;
+
+    static final class Result {
+        int[] depth;
+        int reached;
+        int levels;
+        int[] frontierSizes;
+        long[] levelNanos;
+        boolean[] bottomUp;
+        long totalNanos;
+    }
+
+    private ParallelBfs() {
+    }
+
+    public static Result run(Graph graph, int source) {
+        long start = System.nanoTime();
+        int n = graph.nodeCount();
+        int words = (n + 63) >>> 6;
+        int[] depth = new int[n];
+        Arrays.fill(depth, -1);
+        long[] visited = new long[words];
+        long[] frontier = new long[words];
+        long[] next = new long[words];
+
+        Result result = new Result();
+        result.depth = depth;
+        int[] frontierSizes = new int[16];
+        long[] levelNanos = new long[16];
+        boolean[] bottomUp = new boolean[16];
+
+        depth[source] = 0;
+        visited[source >>> 6] |= 1L << source;
+        frontier[source >>> 6] |= 1L << source;
+        long frontierSize = 1;
+        long frontierEdges = graph.degree(source);
+        long unexploredEdges = 2 * graph.edgeCount() - frontierEdges;
+        boolean useBottomUp = false;
+        int level = 0;
+        int reached = 1;
+        int tasks = (words + WORDS_PER_TASK - 1) / WORDS_PER_TASK;
+
+        while (frontierSize > 0) {
+            long levelStart = System.nanoTime();
+            if (!useBottomUp && frontierEdges > unexploredEdges / ALPHA) {
+                useBottomUp = true;
+            } else if (useBottomUp && frontierSize < n / BETA) {
+                useBottomUp = false;
+            }
+            int nextLevel = level + 1;
+            long[] current = frontier;
+            long[] found = next;
+            boolean bottomUpLevel = useBottomUp;
+            long nextEdges = IntStream.range(0, tasks).parallel().mapToLong(task -> {
+                int from = task * WORDS_PER_TASK, to = Math.min(words, from + WORDS_PER_TASK);
+                return bottomUpLevel ? bottomUpStep(graph, current, found, visited, depth, nextLevel, from, to, n)
+                        : topDownStep(graph, current, found, visited, depth, nextLevel, from, to);
+            }).sum();
+            long nextSize = IntStream.range(0, tasks).parallel().mapToLong(task -> {
+                long count = 0;
+                for (int w = task * WORDS_PER_TASK, to = Math.min(words, w + WORDS_PER_TASK); w < to; w++) {
+                    count += Long.bitCount(found[w]);
+                }
+                return count;
+            }).sum();
+
+            if (level == frontierSizes.length) {
+                frontierSizes = Arrays.copyOf(frontierSizes, level * 2);
+                levelNanos = Arrays.copyOf(levelNanos, level * 2);
+                bottomUp = Arrays.copyOf(bottomUp, level * 2);
+            }
+            frontierSizes[level] = (int) frontierSize;
+            bottomUp[level] = bottomUpLevel;
+            levelNanos[level] = System.nanoTime() - levelStart;
+            level++;
+
+            reached += nextSize;
+            unexploredEdges -= nextEdges;
+            frontierEdges = nextEdges;
+            frontierSize = nextSize;
+            Arrays.fill(frontier, 0);
+            frontier = found;
+            next = current;
+        }
+
+        result.reached = reached;
+        result.levels = level;
+        result.frontierSizes = Arrays.copyOf(frontierSizes, level);
+        result.levelNanos = Arrays.copyOf(levelNanos, level);
+        result.bottomUp = Arrays.copyOf(bottomUp, level);
+        result.totalNanos = System.nanoTime() - start;
+        return result;
+    }
+
+    // Returns the summed degree of the nodes this task added to the next frontier.
+    private static long topDownStep(Graph graph, long[] frontier, long[] next, long[] visited, int[] depth, int level,
+            int fromWord, int toWord) {
+        long edges = 0;
+        for (int w = fromWord; w < toWord; w++) {
+            for (long bits = frontier[w]; bits != 0; bits &= bits - 1) {
+                int node = (w << 6) + Long.numberOfTrailingZeros(bits);
+                for (int k = 0, degree = graph.degree(node); k < degree; k++) {
+                    int neighbor = graph.neighbor(node, k);
+                    long mask = 1L << neighbor;
+                    int word = neighbor >>> 6;
+                    if ((visited[word] & mask) == 0
+                            && ((long) WORDS.getAndBitwiseOr(visited, word, mask) & mask) == 0) {
+                        depth[neighbor] = level;
+                        WORDS.getAndBitwiseOr(next, word, mask);
+                        edges += graph.degree(neighbor);
+                    }
+                }
+            }
+        }
+        return edges;
+    }
+
+    private static long bottomUpStep(Graph graph, long[] frontier, long[] next, long[] visited, int[] depth, int level,
+            int fromWord, int toWord, int n) {
+        long edges = 0;
+        for (int w = fromWord; w < toWord; w++) {
+            long unvisited = ~visited[w];
+            if (w == (n - 1) >>> 6 && (n & 63) != 0) {
+                unvisited &= (1L << n) - 1;
+            }
+            long added = 0;
+            for (long bits = unvisited; bits != 0; bits &= bits - 1) {
+                int node = (w << 6) + Long.numberOfTrailingZeros(bits);
+                for (int k = 0, degree = graph.degree(node); k < degree; k++) {
+                    int parent = graph.neighbor(node, k);
+                    if ((frontier[parent >>> 6] & 1L << parent) != 0) {
+                        depth[node] = level;
+                        added |= 1L << node;
+                        edges += degree;
+                        break;
+                    }
+                }
+            }
+            // Only this task touches word w of visited and next in bottom-up mode.
+            if (added != 0) {
+                visited[w] |= added;
+                next[w] |= added;
+            }
+        }
+        return edges;
+    }
+}
@@ -0,0 +1,161 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+
+// Fork/join merge sort over one preallocated scratch buffer, with insertion sort
+// below a cutoff. Merges copy their range into the buffer and merge back, so no
+// merge allocates.
+final class ParallelMergeSort {
+    static final int INSERTION_CUTOFF = 32;
+
+    private ParallelMergeSort() {
+    }
+
+    public static void sort(int[] array) {
+        sort(array, null);
+    }
+
+    // Records every finished leaf and merge as a batch of writes tagged with the
+    // worker that produced it, so playback can colour each worker's segment. The
+    // tasks count their own operations, which are added to the array's totals once
+    // the sort has joined.
+    public static void sort(TracedArray array) {
+        SortTask root = sort(array.array(), array.trace());
+        if (root != null) {
+            array.addCounts(root.comparisons, 0, root.reads, root.writes);
+        }
+    }
+
+    private static SortTask sort(int[] array, OperationTrace trace) {
+        if (array.length < 2) {
+            return null;
+        }
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        int leafSize = Math.max(INSERTION_CUTOFF, array.length / (pool.getParallelism() * 8));
+        Recorder recorder = trace == null ? null : new Recorder(trace, array);
+        SortTask root = new SortTask(array, new int[array.length], 0, array.length, leafSize, recorder,
+                Thread.currentThread());
+        pool.invoke(root);
+        return root;
+    }
+
+    private static final class SortTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] array, aux;
+        private final int from, to, leafSize;
+        private final transient Recorder recorder;
+        // Workers are not interrupted when the run is, so tasks check the thread that started it.
+        private final transient Thread caller;
+        // This task's operations plus its subtasks', complete once compute returns.
+        long comparisons, reads, writes;
+
+        SortTask(int[] array, int[] aux, int from, int to, int leafSize, Recorder recorder, Thread caller) {
+            this.array = array;
+            this.aux = aux;
+            this.from = from;
+            this.to = to;
+            this.leafSize = leafSize;
+            this.recorder = recorder;
+            this.caller = caller;
+        }
+
+        @Override
+        protected void compute() {
+            RunService.checkCancelled(caller);
+            if (to - from <= leafSize) {
+                sequentialSort(from, to);
+            } else {
+                int mid = (from + to) >>> 1;
+                SortTask left = new SortTask(array, aux, from, mid, leafSize, recorder, caller);
+                SortTask right = new SortTask(array, aux, mid, to, leafSize, recorder, caller);
+                invokeAll(left, right);
+                comparisons += left.comparisons + right.comparisons;
+                reads += left.reads + right.reads;
+                writes += left.writes + right.writes;
+                merge(from, mid, to);
+            }
+            if (recorder != null) {
+                recorder.record(from, to);
+            }
+        }
+
+        private void sequentialSort(int from, int to) {
+            if (to - from <= INSERTION_CUTOFF) {
+                insertionSort(from, to);
+                return;
+            }
+            // Leaves can be large on few cores, so they check too.
+            RunService.checkCancelled(caller);
+            int mid = (from + to) >>> 1;
+            sequentialSort(from, mid);
+            sequentialSort(mid, to);
+            merge(from, mid, to);
+        }
+
+        // Counts like TracedArray: reads and writes of the array, not of the scratch buffer.
+        private void merge(int from, int mid, int to) {
+            comparisons++;
+            reads += 2;
+            if (array[mid - 1] <= array[mid]) {
+                return;
+            }
+            System.arraycopy(array, from, aux, from, to - from);
+            reads += to - from;
+            int i = from, j = mid, k = from;
+            while (i < mid && j < to) {
+                comparisons++;
+                array[k++] = aux[i] <= aux[j] ? aux[i++] : aux[j++];
+            }
+            // Whatever is left of the right half is already in place.
+            System.arraycopy(aux, i, array, k, mid - i);
+            writes += k - from + mid - i;
+        }
+
+        private void insertionSort(int from, int to) {
+            for (int i = from + 1; i < to; i++) {
+                int key = array[i];
+                int j = i - 1;
+                reads++;
+                while (j >= from) {
+                    comparisons++;
+                    reads++;
+                    if (array[j] <= key) {
+                        break;
+                    }
+                    array[j + 1] = array[j];
+                    writes++;
+                    j--;
+                }
+                array[j + 1] = key;
+                writes++;
+            }
+        }
+    }
+
+    // Tasks work on disjoint ranges, so appending each finished range under one lock
+    // gives a trace that replays to the same result in any interleaving.
+    private static final class Recorder {
+        private final OperationTrace trace;
+        private final int[] array;
+        private final int[] recorded;
+
+        Recorder(OperationTrace trace, int[] array) {
+            this.trace = trace;
+            this.array = array;
+            this.recorded = array.clone();
+        }
+
+        synchronized void record(int from, int to) {
+            Thread current = Thread.currentThread();
+            int worker = current instanceof ForkJoinWorkerThread ? ((ForkJoinWorkerThread) current).getPoolIndex() : 0;
+            trace.owner(from, to, worker);
+            for (int i = from; i < to; i++) {
+                if (recorded[i] != array[i]) {
+                    trace.write(i, array[i], recorded[i]);
+                    recorded[i] = array[i];
+                }
+            }
+        }
+    }
+}
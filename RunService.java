@@ -0,0 +1,93 @@
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Runs algorithms for one panel on a shared pool with a thread per core, so panels
+// racing each other record side by side. Submitting a run cancels the previous one
+// by interrupting it, and a run only starts once the previous one has exited, so a
+// panel never has two active runs.
+final class RunService {
+    interface RunListener {
+        default void started(String name) {
+        }
+
+        default void cancelled(String name, long elapsedNanos) {
+        }
+
+        default void finished(String name, long elapsedNanos) {
+        }
+
+        default void failed(String name, Throwable error, long elapsedNanos) {
+        }
+    }
+
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+    private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(
+            Math.max(2, Runtime.getRuntime().availableProcessors()), task -> {
+                Thread thread = new Thread(task, "algorithm-run-" + THREAD_COUNT.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    private final ReentrantLock activeRun = new ReentrantLock();
+    private final RunListener listener;
+    private Future<?> current;
+
+    public RunService(RunListener listener) {
+        this.listener = listener;
+    }
+
+    public synchronized void submit(String name, Runnable task) {
+        cancel();
+        current = EXECUTOR.submit(() -> run(name, task));
+    }
+
+    public synchronized void cancel() {
+        if (current != null) {
+            current.cancel(true);
+            current = null;
+        }
+    }
+
+    private void run(String name, Runnable task) {
+        activeRun.lock();
+        long start = System.nanoTime();
+        try {
+            if (Thread.currentThread().isInterrupted()) {
+                listener.cancelled(name, 0);
+                return;
+            }
+            listener.started(name);
+            task.run();
+            if (Thread.currentThread().isInterrupted()) {
+                listener.cancelled(name, System.nanoTime() - start);
+            } else {
+                listener.finished(name, System.nanoTime() - start);
+            }
+        } catch (CancellationException e) {
+            listener.cancelled(name, System.nanoTime() - start);
+        } catch (RuntimeException | Error e) {
+            listener.failed(name, e, System.nanoTime() - start);
+        } finally {
+            activeRun.unlock();
+        }
+    }
+
+    // Cooperative cancellation point for long-running algorithm code.
+    static void checkCancelled() {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException();
+        }
+    }
+
+    // The same for work a run hands to other threads, such as fork/join workers, which
+    // are not interrupted along with the run's own thread.
+    static void checkCancelled(Thread runThread) {
+        if (runThread.isInterrupted() || Thread.currentThread().isInterrupted()) {
+            throw new CancellationException();
+        }
+    }
+}
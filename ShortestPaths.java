@@ -0,0 +1,233 @@
+import java.util.Arrays;
+
+// Dijkstra, A* and bidirectional Dijkstra over a Graph's edge weights. Per-node
+// buffers are kept between runs and invalidated with a run stamp, so repeated
+// queries on the same graph allocate nothing. Each run records the nodes it
+// settled, in order, and how many edges it relaxed.
+final class ShortestPaths {
+    private final Search forward = new Search();
+    private final Search backward = new Search();
+    private int run;
+    private int[] settledOrder = new int[0];
+    private int settledCount;
+    private long relaxations;
+    private long elapsedNanos;
+    private int source, target, meeting;
+    private double best;
+
+    // Distances and parents for one search direction.
+    private static final class Search {
+        double[] distance = new double[0];
+        int[] parent = new int[0];
+        int[] reached = new int[0];
+        int[] settled = new int[0];
+        final IndexedHeap heap = new IndexedHeap(0);
+
+        void ensureCapacity(int n) {
+            if (distance.length < n) {
+                distance = new double[n];
+                parent = new int[n];
+                reached = new int[n];
+                settled = new int[n];
+                heap.ensureCapacity(n);
+            }
+        }
+    }
+
+    public double dijkstra(Graph graph, int source, int target) {
+        return search(graph, source, target, false);
+    }
+
+    public double aStar(Graph graph, int source, int target) {
+        return search(graph, source, target, true);
+    }
+
+    private double search(Graph graph, int source, int target, boolean heuristic) {
+        long start = System.nanoTime();
+        begin(graph, source, target);
+        // Scaling by the smallest weight-to-length ratio keeps the heuristic admissible
+        // when explicit weights are shorter than the straight line.
+        double scale = heuristic ? heuristicScale(graph) : 0;
+        Search s = forward;
+        reach(s, source, 0, -1);
+        s.heap.offer(source, 0);
+        while (!s.heap.isEmpty()) {
+            int node = s.heap.poll();
+            s.settled[node] = run;
+            settledOrder[settledCount++] = node;
+            if (node == target) {
+                best = s.distance[node];
+                meeting = node;
+                break;
+            }
+            for (int k = 0, degree = graph.degree(node); k < degree; k++) {
+                int neighbor = graph.neighbor(node, k);
+                if (s.settled[neighbor] == run) {
+                    continue;
+                }
+                relaxations++;
+                double distance = s.distance[node] + graph.weight(node, k);
+                if (s.reached[neighbor] != run || distance < s.distance[neighbor]) {
+                    reach(s, neighbor, distance, node);
+                    s.heap.offer(neighbor, scale == 0 ? distance : distance + scale * length(graph, neighbor, target));
+                }
+            }
+        }
+        elapsedNanos = System.nanoTime() - start;
+        return best;
+    }
+
+    // Grows a search from each end, always expanding the side with the smaller queue,
+    // until the two queue minimums together can no longer beat the best path found.
+    public double bidirectionalDijkstra(Graph graph, int source, int target) {
+        long start = System.nanoTime();
+        begin(graph, source, target);
+        reach(forward, source, 0, -1);
+        forward.heap.offer(source, 0);
+        reach(backward, target, 0, -1);
+        backward.heap.offer(target, 0);
+        if (source == target) {
+            best = 0;
+            meeting = source;
+        }
+        while (!forward.heap.isEmpty() && !backward.heap.isEmpty()
+                && forward.heap.minKey() + backward.heap.minKey() < best) {
+            boolean forwardSide = forward.heap.size() <= backward.heap.size();
+            Search s = forwardSide ? forward : backward, other = forwardSide ? backward : forward;
+            int node = s.heap.poll();
+            s.settled[node] = run;
+            settledOrder[settledCount++] = node;
+            for (int k = 0, degree = graph.degree(node); k < degree; k++) {
+                int neighbor = graph.neighbor(node, k);
+                if (s.settled[neighbor] == run) {
+                    continue;
+                }
+                relaxations++;
+                double distance = s.distance[node] + graph.weight(node, k);
+                if (s.reached[neighbor] != run || distance < s.distance[neighbor]) {
+                    reach(s, neighbor, distance, node);
+                    s.heap.offer(neighbor, distance);
+                }
+                if (other.reached[neighbor] == run && distance + other.distance[neighbor] < best) {
+                    best = distance + other.distance[neighbor];
+                    meeting = neighbor;
+                }
+            }
+        }
+        elapsedNanos = System.nanoTime() - start;
+        return best;
+    }
+
+    private void begin(Graph graph, int source, int target) {
+        int n = graph.nodeCount();
+        forward.ensureCapacity(n);
+        backward.ensureCapacity(n);
+        if (settledOrder.length < 2 * n) {
+            settledOrder = new int[2 * n];
+        }
+        if (++run == 0) {
+            for (Search s : new Search[] { forward, backward }) {
+                Arrays.fill(s.reached, 0);
+                Arrays.fill(s.settled, 0);
+            }
+            run = 1;
+        }
+        forward.heap.clear();
+        backward.heap.clear();
+        settledCount = 0;
+        relaxations = 0;
+        this.source = source;
+        this.target = target;
+        meeting = -1;
+        best = Double.POSITIVE_INFINITY;
+    }
+
+    private void reach(Search s, int node, double distance, int parent) {
+        s.reached[node] = run;
+        s.distance[node] = distance;
+        s.parent[node] = parent;
+    }
+
+    private static double length(Graph graph, int a, int b) {
+        double dx = graph.x(a) - graph.x(b), dy = graph.y(a) - graph.y(b);
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    private static double heuristicScale(Graph graph) {
+        if (!graph.hasExplicitWeights()) {
+            return 1;
+        }
+        double scale = 1;
+        for (int node = 0; node < graph.nodeCount(); node++) {
+            for (int k = 0, degree = graph.degree(node); k < degree; k++) {
+                double length = length(graph, node, graph.neighbor(node, k));
+                if (length > 0) {
+                    scale = Math.min(scale, graph.weight(node, k) / length);
+                }
+            }
+        }
+        return scale;
+    }
+
+    // Length of the last path found, or infinity if the target was unreachable.
+    public double distance() {
+        return best;
+    }
+
+    // Nodes of the last path from source to target, or an empty array.
+    public int[] path() {
+        if (meeting < 0) {
+            return new int[0];
+        }
+        int length = 0;
+        for (int node = meeting; node >= 0; node = forward.parent[node]) {
+            length++;
+        }
+        boolean bidirectional = backward.reached[target] == run && backward.reached[meeting] == run;
+        if (bidirectional) {
+            for (int node = backward.parent[meeting]; node >= 0; node = backward.parent[node]) {
+                length++;
+            }
+        }
+        int[] path = new int[length];
+        int i = 0;
+        for (int node = meeting; node >= 0; node = forward.parent[node]) {
+            path[i++] = node;
+        }
+        for (int a = 0, b = i - 1; a < b; a++, b--) {
+            int swap = path[a];
+            path[a] = path[b];
+            path[b] = swap;
+        }
+        if (bidirectional) {
+            for (int node = backward.parent[meeting]; node >= 0; node = backward.parent[node]) {
+                path[i++] = node;
+            }
+        }
+        return path;
+    }
+
+    public int source() {
+        return source;
+    }
+
+    public int target() {
+        return target;
+    }
+
+    public int settledCount() {
+        return settledCount;
+    }
+
+    public int settledNode(int index) {
+        return settledOrder[index];
+    }
+
+    public long relaxations() {
+        return relaxations;
+    }
+
+    public long elapsedNanos() {
+        return elapsedNanos;
+    }
+}
@@ -0,0 +1,19 @@
+// A sort the visualizer and the headless tools find at runtime. Implementations are
+// listed in META-INF/services/SortAlgorithm and need a public no-argument constructor;
+// see BuiltInSorts. A sort touches the data only through the TracedArray, so the same
+// code runs at full speed untraced in BatchRunner and SortBenchmark and is recorded
+// step by step for playback in the visualizer.
+interface SortAlgorithm {
+    // Shown on buttons and race lanes, e.g. "Quick Sort".
+    String name();
+
+    // Used on the command line, e.g. "quick".
+    String key();
+
+    void sort(TracedArray array);
+
+    // Quadratic sorts are skipped on large benchmark inputs.
+    default boolean quadratic() {
+        return false;
+    }
+}
@@ -0,0 +1,350 @@
+import java.util.Arrays;
+
+final class SortAlgorithms {
+    private static final int INSERTION_CUTOFF = 16;
+    private static final int RADIX_BITS = 8;
+    private static final int COUNTING_RANGE_LIMIT = 1 << 20;
+
+    private SortAlgorithms() {
+    }
+
+    public static void bubbleSort(TracedArray array) {
+        int n = array.length();
+        for (int i = 0; i < n - 1; i++) {
+            boolean swapped = false;
+            for (int j = 0; j < n - 1 - i; j++) {
+                if (array.compare(j, j + 1) > 0) {
+                    array.swap(j, j + 1);
+                    swapped = true;
+                }
+            }
+            if (!swapped) {
+                break;
+            }
+        }
+    }
+
+    public static void selectionSort(TracedArray array) {
+        int n = array.length();
+        for (int i = 0; i < n - 1; i++) {
+            int minIndex = i;
+            for (int j = i + 1; j < n; j++) {
+                if (array.compare(j, minIndex) < 0) {
+                    minIndex = j;
+                }
+            }
+            if (i != minIndex) {
+                array.swap(i, minIndex);
+            }
+        }
+    }
+
+    public static void insertionSort(TracedArray array) {
+        insertionSort(array, 0, array.length());
+    }
+
+    private static void insertionSort(TracedArray array, int from, int to) {
+        for (int i = from + 1; i < to; i++) {
+            int key = array.get(i);
+            int j = i - 1;
+            while (j >= from && array.compareValues(array.get(j), key, j, j + 1) > 0) {
+                array.set(j + 1, array.get(j));
+                j--;
+            }
+            array.set(j + 1, key);
+        }
+    }
+
+    // One scratch buffer serves every merge. The halves are copied into it through
+    // the TracedArray, so each element read counts.
+    public static void mergeSort(TracedArray array) {
+        mergeSortHelper(array, new int[array.length()], 0, array.length() - 1);
+    }
+
+    private static void mergeSortHelper(TracedArray array, int[] scratch, int left, int right) {
+        if (left < right) {
+            int mid = left + (right - left) / 2;
+            mergeSortHelper(array, scratch, left, mid);
+            mergeSortHelper(array, scratch, mid + 1, right);
+            merge(array, scratch, left, mid, right);
+        }
+    }
+
+    private static void merge(TracedArray array, int[] scratch, int left, int mid, int right) {
+        for (int k = left; k <= right; k++) {
+            scratch[k] = array.get(k);
+        }
+
+        int i = left, j = mid + 1, k = left;
+        while (i <= mid && j <= right) {
+            if (array.compareValues(scratch[i], scratch[j], i, j) <= 0) {
+                array.set(k++, scratch[i++]);
+            } else {
+                array.set(k++, scratch[j++]);
+            }
+        }
+        while (i <= mid) {
+            array.set(k++, scratch[i++]);
+        }
+        while (j <= right) {
+            array.set(k++, scratch[j++]);
+        }
+    }
+
+    public static void quickSort(TracedArray array) {
+        quickSortHelper(array, 0, array.length() - 1);
+    }
+
+    private static void quickSortHelper(TracedArray array, int low, int high) {
+        if (low < high) {
+            int pi = partition(array, low, high);
+            quickSortHelper(array, low, pi - 1);
+            quickSortHelper(array, pi + 1, high);
+        }
+    }
+
+    private static int partition(TracedArray array, int low, int high) {
+        int i = low + 1;
+        int j = high;
+
+        while (i <= j) {
+            while (i <= j && array.compare(i, low) <= 0) {
+                i++;
+            }
+            while (i <= j && array.compare(j, low) > 0) {
+                j--;
+            }
+            if (i < j) {
+                array.swap(i, j);
+            }
+        }
+
+        array.swap(low, j);
+        return j;
+    }
+
+    public static void heapSort(TracedArray array) {
+        heapSort(array, 0, array.length());
+    }
+
+    // Max-heap over [from, to) rooted at from.
+    private static void heapSort(TracedArray array, int from, int to) {
+        int n = to - from;
+        for (int i = n / 2 - 1; i >= 0; i--) {
+            siftDown(array, from, i, n);
+        }
+        for (int end = n - 1; end > 0; end--) {
+            array.swap(from, from + end);
+            siftDown(array, from, 0, end);
+        }
+    }
+
+    private static void siftDown(TracedArray array, int base, int root, int size) {
+        while (true) {
+            int child = 2 * root + 1;
+            if (child >= size) {
+                return;
+            }
+            if (child + 1 < size && array.compare(base + child + 1, base + child) > 0) {
+                child++;
+            }
+            if (array.compare(base + root, base + child) >= 0) {
+                return;
+            }
+            array.swap(base + root, base + child);
+            root = child;
+        }
+    }
+
+    // Quicksort with a median-of-three pivot that hands a range to heap sort once it is
+    // 2*log2(n) partitions deep, so sorted and adversarial inputs stay O(n log n).
+    // Ranges are tagged with their depth.
+    public static void introSort(TracedArray array) {
+        int n = array.length();
+        introSort(array, 0, n, 2 * (31 - Integer.numberOfLeadingZeros(Math.max(1, n))), 0);
+    }
+
+    private static void introSort(TracedArray array, int from, int to, int depthLimit, int depth) {
+        // Recursing into the smaller side and looping on the larger keeps the stack at log2(n).
+        while (to - from > INSERTION_CUTOFF) {
+            if (depth == depthLimit) {
+                heapSort(array, from, to);
+                return;
+            }
+            array.mark(from, to, depth++);
+            int mid = (from + to) >>> 1;
+            if (array.compare(mid, from) < 0) {
+                array.swap(mid, from);
+            }
+            if (array.compare(to - 1, from) < 0) {
+                array.swap(to - 1, from);
+            }
+            if (array.compare(to - 1, mid) < 0) {
+                array.swap(to - 1, mid);
+            }
+            array.swap(from, mid);
+            int pivot = partition(array, from, to - 1);
+            if (pivot - from < to - pivot - 1) {
+                introSort(array, from, pivot, depthLimit, depth);
+                from = pivot + 1;
+            } else {
+                introSort(array, pivot + 1, to, depthLimit, depth);
+                to = pivot;
+            }
+        }
+        insertionSort(array, from, to);
+    }
+
+    // Yaroslavskiy's dual-pivot partitioning into < p, p..q and > q. The pivots come
+    // from the tertiles rather than the ends, so sorted input still splits evenly.
+    // The three parts are tagged 0, 1 and 2.
+    public static void dualPivotQuickSort(TracedArray array) {
+        dualPivotQuickSort(array, 0, array.length() - 1);
+    }
+
+    private static void dualPivotQuickSort(TracedArray array, int low, int high) {
+        if (high - low < INSERTION_CUTOFF) {
+            insertionSort(array, low, high + 1);
+            return;
+        }
+        int third = (high - low) / 3;
+        array.swap(low, low + third);
+        array.swap(high, high - third);
+        if (array.compare(low, high) > 0) {
+            array.swap(low, high);
+        }
+        int lt = low + 1, gt = high - 1;
+        for (int k = lt; k <= gt; k++) {
+            if (array.compare(k, low) < 0) {
+                if (k != lt) {
+                    array.swap(k, lt);
+                }
+                lt++;
+            } else if (array.compare(k, high) > 0) {
+                while (k < gt && array.compare(gt, high) > 0) {
+                    gt--;
+                }
+                array.swap(k, gt--);
+                if (array.compare(k, low) < 0) {
+                    if (k != lt) {
+                        array.swap(k, lt);
+                    }
+                    lt++;
+                }
+            }
+        }
+        array.swap(low, --lt);
+        array.swap(high, ++gt);
+        array.mark(low, lt, 0);
+        array.mark(lt, gt + 1, 1);
+        array.mark(gt + 1, high + 1, 2);
+        dualPivotQuickSort(array, low, lt - 1);
+        // Equal pivots leave a middle part that is all one value.
+        if (array.compare(lt, gt) < 0) {
+            dualPivotQuickSort(array, lt + 1, gt - 1);
+        }
+        dualPivotQuickSort(array, gt + 1, high);
+    }
+
+    // LSD radix sort on 8-bit digits of the value with its sign bit flipped, so
+    // negatives come first. Each pass counts digits, scatters into one buffer allocated
+    // per sort and writes back, tagged with the pass; a pass whose digit is the same
+    // for every element is skipped.
+    public static void radixSort(TracedArray array) {
+        int n = array.length();
+        if (n < 2) {
+            return;
+        }
+        int[] buffer = new int[n];
+        int[] counts = new int[1 << RADIX_BITS];
+        for (int shift = 0, pass = 0; shift < Integer.SIZE; shift += RADIX_BITS) {
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < n; i++) {
+                counts[digit(array.get(i), shift)]++;
+            }
+            if (counts[digit(array.get(0), shift)] == n) {
+                continue;
+            }
+            for (int d = 0, start = 0; d < counts.length; d++) {
+                int count = counts[d];
+                counts[d] = start;
+                start += count;
+            }
+            for (int i = 0; i < n; i++) {
+                int value = array.get(i);
+                buffer[counts[digit(value, shift)]++] = value;
+            }
+            array.mark(0, n, pass++);
+            for (int i = 0; i < n; i++) {
+                array.set(i, buffer[i]);
+            }
+        }
+    }
+
+    // Untraced radix sort of data[0, length) for callers sorting many chunks: scratch
+    // must hold length values and is reused, and the two arrays swap roles each pass
+    // instead of copying back.
+    static void radixSort(int[] data, int length, int[] scratch) {
+        int[] counts = new int[1 << RADIX_BITS];
+        int[] from = data, to = scratch;
+        for (int shift = 0; shift < Integer.SIZE && length > 1; shift += RADIX_BITS) {
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < length; i++) {
+                counts[digit(from[i], shift)]++;
+            }
+            if (counts[digit(from[0], shift)] == length) {
+                continue;
+            }
+            for (int d = 0, start = 0; d < counts.length; d++) {
+                int count = counts[d];
+                counts[d] = start;
+                start += count;
+            }
+            for (int i = 0; i < length; i++) {
+                int value = from[i];
+                to[counts[digit(value, shift)]++] = value;
+            }
+            int[] swap = from;
+            from = to;
+            to = swap;
+        }
+        if (from != data) {
+            System.arraycopy(from, 0, data, 0, length);
+        }
+    }
+
+    private static int digit(int value, int shift) {
+        return ((value ^ Integer.MIN_VALUE) >>> shift) & ((1 << RADIX_BITS) - 1);
+    }
+
+    // Counts each value in [min, max] and writes them back in order. Ranges wider than
+    // COUNTING_RANGE_LIMIT would need a huge count table, so those go to radix sort.
+    public static void countingSort(TracedArray array) {
+        int n = array.length();
+        if (n < 2) {
+            return;
+        }
+        int min = array.get(0), max = min;
+        for (int i = 1; i < n; i++) {
+            int value = array.get(i);
+            if (value < min) {
+                min = value;
+            } else if (value > max) {
+                max = value;
+            }
+        }
+        if ((long) max - min >= COUNTING_RANGE_LIMIT) {
+            radixSort(array);
+            return;
+        }
+        int[] counts = new int[max - min + 1];
+        for (int i = 0; i < n; i++) {
+            counts[array.get(i) - min]++;
+        }
+        for (int value = 0, k = 0; value < counts.length; value++) {
+            for (int count = counts[value]; count > 0; count--) {
+                array.set(k++, value + min);
+            }
+        }
+    }
+}
@@ -0,0 +1,150 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
+
+// Benchmarks the visualizer's sorts against Arrays.sort/parallelSort over input sizes
+// and distributions, with warmup and a time-boxed measurement per case, and writes
+// JSON results.
+//
+//   java SortBenchmark [--sizes 10,1000,...] [--distributions random,sorted,...]
+//                      [--algorithms bubble,quick,...] [--warmup-ms 500] [--measure-ms 1000]
+//                      [--max-quadratic 50000] [--out results.json]
+public class SortBenchmark {
+    // The registered sorts by key, then the JDK sorts as a baseline.
+    private static final Map<String, Consumer<int[]>> ALGORITHMS = new LinkedHashMap<>();
+
+    static {
+        for (SortAlgorithm sort : SortRegistry.sorts()) {
+            ALGORITHMS.put(sort.key(), a -> sort.sort(new TracedArray(a, null)));
+        }
+        ALGORITHMS.put("Arrays.sort", Arrays::sort);
+        ALGORITHMS.put("Arrays.parallelSort", Arrays::parallelSort);
+    }
+
+    private static long sink;
+
+    public static void main(String[] args) throws IOException {
+        int[] sizes = { 10, 100, 1000, 10_000, 100_000, 1_000_000, 10_000_000 };
+        String[] distributions = Inputs.DISTRIBUTIONS;
+        String[] algorithms = ALGORITHMS.keySet().toArray(new String[0]);
+        long warmupMillis = 500;
+        long measureMillis = 1000;
+        int maxQuadratic = 50_000;
+        String out = null;
+
+        for (int i = 0; i < args.length; i++) {
+            String value = i + 1 < args.length ? args[i + 1] : "";
+            switch (args[i]) {
+                case "--sizes":
+                    sizes = Arrays.stream(value.split(",")).mapToInt(Integer::parseInt).toArray();
+                    break;
+                case "--distributions":
+                    distributions = value.split(",");
+                    break;
+                case "--algorithms":
+                    algorithms = value.split(",");
+                    break;
+                case "--warmup-ms":
+                    warmupMillis = Long.parseLong(value);
+                    break;
+                case "--measure-ms":
+                    measureMillis = Long.parseLong(value);
+                    break;
+                case "--max-quadratic":
+                    maxQuadratic = Integer.parseInt(value);
+                    break;
+                case "--out":
+                    out = value;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+            i++;
+        }
+
+        List<String> results = new ArrayList<>();
+        for (String algorithm : algorithms) {
+            Consumer<int[]> sort = ALGORITHMS.get(algorithm);
+            if (sort == null) {
+                throw new IllegalArgumentException("Unknown algorithm: " + algorithm);
+            }
+            boolean quadratic = SortRegistry.byKey(algorithm) != null && SortRegistry.byKey(algorithm).quadratic();
+            for (String distribution : distributions) {
+                for (int size : sizes) {
+                    String result;
+                    if (size > maxQuadratic && quadratic) {
+                        result = json(algorithm, distribution, size, "skipped", 0, 0, 0);
+                    } else {
+                        result = measure(algorithm, sort, distribution, size, warmupMillis, measureMillis);
+                    }
+                    System.err.println(result);
+                    results.add(result);
+                }
+            }
+        }
+
+        String json = "[\n  " + String.join(",\n  ", results) + "\n]\n";
+        if (out == null) {
+            System.out.print(json);
+        } else {
+            Files.write(Paths.get(out), json.getBytes());
+        }
+        System.err.println("checksum " + sink);
+    }
+
+    private static String measure(String algorithm, Consumer<int[]> sort, String distribution, int size,
+            long warmupMillis, long measureMillis) {
+        int[] input = Inputs.generate(distribution, size, size * 31L + distribution.hashCode());
+        int[] expected = input.clone();
+        Arrays.sort(expected);
+        int[] work = new int[size];
+        try {
+            runFor(sort, input, work, warmupMillis);
+            if (!Arrays.equals(work, expected)) {
+                return json(algorithm, distribution, size, "incorrect", 0, 0, 0);
+            }
+
+            long deadline = System.nanoTime() + measureMillis * 1_000_000L;
+            int iterations = 0;
+            long total = 0;
+            long best = Long.MAX_VALUE;
+            do {
+                System.arraycopy(input, 0, work, 0, size);
+                long start = System.nanoTime();
+                sort.accept(work);
+                long elapsed = System.nanoTime() - start;
+                sink += work[size / 2];
+                total += elapsed;
+                best = Math.min(best, elapsed);
+                iterations++;
+            } while (System.nanoTime() < deadline);
+            return json(algorithm, distribution, size, "ok", iterations, total / iterations, best);
+        } catch (StackOverflowError e) {
+            return json(algorithm, distribution, size, "stack-overflow", 0, 0, 0);
+        }
+    }
+
+    private static void runFor(Consumer<int[]> sort, int[] input, int[] work, long millis) {
+        long deadline = System.nanoTime() + millis * 1_000_000L;
+        do {
+            System.arraycopy(input, 0, work, 0, input.length);
+            sort.accept(work);
+        } while (System.nanoTime() < deadline);
+    }
+
+    private static String json(String algorithm, String distribution, int size, String status, int iterations,
+            long meanNanos, long bestNanos) {
+        return String.format(Locale.ROOT,
+                "{\"algorithm\": \"%s\", \"distribution\": \"%s\", \"size\": %d, \"status\": \"%s\", "
+                        + "\"iterations\": %d, \"meanNs\": %d, \"bestNs\": %d, \"nsPerElement\": %.3f}",
+                algorithm, distribution, size, status, iterations, meanNanos, bestNanos,
+                size == 0 ? 0.0 : (double) meanNanos / size);
+    }
+}
@@ -0,0 +1,55 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.ServiceLoader;
+
+// Every SortAlgorithm on the class path, in service file order. The providers are
+// loaded the first time the registry is used.
+final class SortRegistry {
+    private static final List<SortAlgorithm> SORTS = load();
+
+    private SortRegistry() {
+    }
+
+    private static List<SortAlgorithm> load() {
+        List<SortAlgorithm> sorts = new ArrayList<>();
+        for (SortAlgorithm sort : ServiceLoader.load(SortAlgorithm.class)) {
+            if (byKey(sorts, sort.key()) != null) {
+                throw new IllegalStateException("Duplicate sort key: " + sort.key());
+            }
+            sorts.add(sort);
+        }
+        if (sorts.isEmpty()) {
+            throw new IllegalStateException("No sorts found; is META-INF/services/SortAlgorithm on the class path?");
+        }
+        return Collections.unmodifiableList(sorts);
+    }
+
+    public static List<SortAlgorithm> sorts() {
+        return SORTS;
+    }
+
+    // The sort with the given command-line key, or null.
+    public static SortAlgorithm byKey(String key) {
+        return byKey(SORTS, key);
+    }
+
+    // The sort with the given display name, or null.
+    public static SortAlgorithm byName(String name) {
+        for (SortAlgorithm sort : SORTS) {
+            if (sort.name().equals(name)) {
+                return sort;
+            }
+        }
+        return null;
+    }
+
+    private static SortAlgorithm byKey(List<SortAlgorithm> sorts, String key) {
+        for (SortAlgorithm sort : sorts) {
+            if (sort.key().equals(key)) {
+                return sort;
+            }
+        }
+        return null;
+    }
+}
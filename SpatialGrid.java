@@ -0,0 +1,304 @@
+import java.awt.Rectangle;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+// Uniform grid over node positions, and a stack of ever coarser grids over edges. Hit
+// tests and rectangle queries only visit the cells they overlap. Each edge is listed in
+// the cells its segment crosses on the finest level where that is at most MAX_EDGE_CELLS
+// cells, so a long edge costs a few coarse cells instead of every query.
+final class SpatialGrid {
+    private static final int MAX_EDGE_CELLS = 32;
+    private static final int LEVEL_FACTOR = 4;
+    // The coarsest level's cells are at least this big, so any int segment fits there.
+    private static final long TOP_CELL_SIZE = 1L << 28;
+
+    private final int cellSize;
+    private final CellMap nodeCells = new CellMap();
+    private final long[] edgeCellSizes;
+    private final CellMap[] edgeCells;
+    private int[] edgeStamps = new int[16];
+    private int stamp;
+
+    public SpatialGrid(int cellSize) {
+        this.cellSize = cellSize;
+        int levels = 1;
+        for (long size = cellSize; size < TOP_CELL_SIZE; size *= LEVEL_FACTOR) {
+            levels++;
+        }
+        edgeCellSizes = new long[levels];
+        edgeCells = new CellMap[levels];
+        for (int level = 0; level < levels; level++) {
+            edgeCellSizes[level] = level == 0 ? cellSize : edgeCellSizes[level - 1] * LEVEL_FACTOR;
+        }
+    }
+
+    public void addNode(int node, int x, int y) {
+        nodeCells.add(cellKey(cell(x), cell(y)), node);
+    }
+
+    public void removeNode(int node, int x, int y) {
+        nodeCells.remove(cellKey(cell(x), cell(y)), node);
+    }
+
+    public void moveNode(int node, int oldX, int oldY, int x, int y) {
+        long from = cellKey(cell(oldX), cell(oldY));
+        long to = cellKey(cell(x), cell(y));
+        if (from != to) {
+            nodeCells.remove(from, node);
+            nodeCells.add(to, node);
+        }
+    }
+
+    public void addEdge(int edge, int x1, int y1, int x2, int y2) {
+        updateEdge(edge, x1, y1, x2, y2, true);
+    }
+
+    public void removeEdge(int edge, int x1, int y1, int x2, int y2) {
+        updateEdge(edge, x1, y1, x2, y2, false);
+    }
+
+    // Adding and removing walk the same cells, so an edge removed with the coordinates it
+    // was added with leaves nothing behind.
+    private void updateEdge(int edge, int x1, int y1, int x2, int y2, boolean add) {
+        if (x1 > x2) {
+            int x = x1, y = y1;
+            x1 = x2;
+            y1 = y2;
+            x2 = x;
+            y2 = y;
+        }
+        int level = 0;
+        while (level < edgeCells.length - 1 && crossedCells(level, x1, y1, x2, y2) > MAX_EDGE_CELLS) {
+            level++;
+        }
+        if (edgeCells[level] == null) {
+            edgeCells[level] = new CellMap();
+        }
+        CellMap cells = edgeCells[level];
+        long size = edgeCellSizes[level];
+        // Column by column, the cells between the segment's heights at the column's sides.
+        for (int cx = cell(x1, size), lastX = cell(x2, size); cx <= lastX; cx++) {
+            double from = y1, to = y2;
+            if (x1 != x2) {
+                double slope = (double) (y2 - y1) / (x2 - x1);
+                from = y1 + slope * (Math.max(x1, cx * size) - x1);
+                to = y1 + slope * (Math.min(x2, (cx + 1) * size) - x1);
+            }
+            for (int cy = cell(Math.min(from, to), size), lastY = cell(Math.max(from, to), size); cy <= lastY; cy++) {
+                if (add) {
+                    cells.add(cellKey(cx, cy), edge);
+                } else {
+                    cells.remove(cellKey(cx, cy), edge);
+                }
+            }
+        }
+    }
+
+    // Upper bound on the cells a segment crosses on a level: one per column and row it spans.
+    private int crossedCells(int level, int x1, int y1, int x2, int y2) {
+        long size = edgeCellSizes[level];
+        return cell(x2, size) - cell(x1, size) + Math.abs(cell(y2, size) - cell(y1, size)) + 1;
+    }
+
+    // Nearest node within radius of (x, y), or -1.
+    public int nodeAt(int x, int y, int radius, Graph graph) {
+        int best = -1;
+        long bestDistance = (long) radius * radius;
+        for (int cx = cell(x - radius); cx <= cell(x + radius); cx++) {
+            for (int cy = cell(y - radius); cy <= cell(y + radius); cy++) {
+                int slot = nodeCells.find(cellKey(cx, cy));
+                if (slot < 0) {
+                    continue;
+                }
+                int[] nodes = nodeCells.values[slot];
+                for (int i = 0, n = nodeCells.sizes[slot]; i < n; i++) {
+                    long dx = graph.x(nodes[i]) - x, dy = graph.y(nodes[i]) - y;
+                    long distance = dx * dx + dy * dy;
+                    if (distance < bestDistance) {
+                        best = nodes[i];
+                        bestDistance = distance;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    // Nodes in cells overlapping the rectangle; callers filter exact bounds if needed.
+    public void nodesIn(Rectangle area, IntConsumer action) {
+        forCells(nodeCells, cellSize, area, action, false);
+    }
+
+    // Each edge whose segment may cross the rectangle, reported once.
+    public void edgesIn(Rectangle area, IntConsumer action) {
+        if (++stamp == 0) {
+            Arrays.fill(edgeStamps, 0);
+            stamp = 1;
+        }
+        for (int level = 0; level < edgeCells.length; level++) {
+            if (edgeCells[level] != null) {
+                forCells(edgeCells[level], edgeCellSizes[level], area, action, true);
+            }
+        }
+    }
+
+    private void forCells(CellMap cells, long size, Rectangle area, IntConsumer action, boolean once) {
+        int minX = cell(area.x, size), maxX = cell(area.x + area.width, size);
+        int minY = cell(area.y, size), maxY = cell(area.y + area.height, size);
+        // Sparse maps with a huge query area are cheaper to walk slot by slot.
+        if ((long) (maxX - minX + 1) * (maxY - minY + 1) > cells.keys.length) {
+            for (int slot = 0; slot < cells.keys.length; slot++) {
+                if (cells.used[slot]) {
+                    long key = cells.keys[slot];
+                    int cx = (int) (key >> 32), cy = (int) key;
+                    if (cx >= minX && cx <= maxX && cy >= minY && cy <= maxY) {
+                        visit(cells, slot, action, once);
+                    }
+                }
+            }
+            return;
+        }
+        for (int cx = minX; cx <= maxX; cx++) {
+            for (int cy = minY; cy <= maxY; cy++) {
+                int slot = cells.find(cellKey(cx, cy));
+                if (slot >= 0) {
+                    visit(cells, slot, action, once);
+                }
+            }
+        }
+    }
+
+    private void visit(CellMap cells, int slot, IntConsumer action, boolean once) {
+        int[] ids = cells.values[slot];
+        for (int i = 0, n = cells.sizes[slot]; i < n; i++) {
+            int id = ids[i];
+            if (once) {
+                if (id >= edgeStamps.length) {
+                    edgeStamps = Arrays.copyOf(edgeStamps, Math.max(id + 1, edgeStamps.length * 2));
+                }
+                if (edgeStamps[id] == stamp) {
+                    continue;
+                }
+                edgeStamps[id] = stamp;
+            }
+            action.accept(id);
+        }
+    }
+
+    public void clear() {
+        nodeCells.clear();
+        Arrays.fill(edgeCells, null);
+    }
+
+    private int cell(int coordinate) {
+        return Math.floorDiv(coordinate, cellSize);
+    }
+
+    private static int cell(long coordinate, long size) {
+        return (int) Math.floorDiv(coordinate, size);
+    }
+
+    private static int cell(double coordinate, long size) {
+        return (int) Math.floor(coordinate / size);
+    }
+
+    private static long cellKey(int cx, int cy) {
+        return (long) cx << 32 | (cy & 0xFFFFFFFFL);
+    }
+
+    // Open-addressing map from cell key to a growable int list.
+    private static final class CellMap {
+        long[] keys = new long[16];
+        boolean[] used = new boolean[16];
+        int[][] values = new int[16][];
+        int[] sizes = new int[16];
+        int count;
+
+        int find(long key) {
+            int mask = keys.length - 1;
+            for (int i = mix(key) & mask;; i = (i + 1) & mask) {
+                if (!used[i]) {
+                    return -1;
+                }
+                if (keys[i] == key) {
+                    return i;
+                }
+            }
+        }
+
+        void add(long key, int id) {
+            int mask = keys.length - 1;
+            int i = mix(key) & mask;
+            while (used[i] && keys[i] != key) {
+                i = (i + 1) & mask;
+            }
+            if (!used[i]) {
+                used[i] = true;
+                keys[i] = key;
+                values[i] = new int[4];
+                if (++count * 2 > keys.length) {
+                    rehash();
+                    add(key, id);
+                    return;
+                }
+            }
+            if (sizes[i] == values[i].length) {
+                values[i] = Arrays.copyOf(values[i], sizes[i] * 2);
+            }
+            values[i][sizes[i]++] = id;
+        }
+
+        // Empty cells keep their slot; the map only grows.
+        void remove(long key, int id) {
+            int slot = find(key);
+            if (slot < 0) {
+                return;
+            }
+            int[] ids = values[slot];
+            for (int i = 0; i < sizes[slot]; i++) {
+                if (ids[i] == id) {
+                    ids[i] = ids[--sizes[slot]];
+                    return;
+                }
+            }
+        }
+
+        void clear() {
+            keys = new long[16];
+            used = new boolean[16];
+            values = new int[16][];
+            sizes = new int[16];
+            count = 0;
+        }
+
+        private void rehash() {
+            long[] oldKeys = keys;
+            boolean[] oldUsed = used;
+            int[][] oldValues = values;
+            int[] oldSizes = sizes;
+            int capacity = keys.length * 2;
+            keys = new long[capacity];
+            used = new boolean[capacity];
+            values = new int[capacity][];
+            sizes = new int[capacity];
+            int mask = capacity - 1;
+            for (int slot = 0; slot < oldKeys.length; slot++) {
+                if (oldUsed[slot]) {
+                    int i = mix(oldKeys[slot]) & mask;
+                    while (used[i]) {
+                        i = (i + 1) & mask;
+                    }
+                    used[i] = true;
+                    keys[i] = oldKeys[slot];
+                    values[i] = oldValues[slot];
+                    sizes[i] = oldSizes[slot];
+                }
+            }
+        }
+
+        private static int mix(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
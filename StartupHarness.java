@@ -0,0 +1,169 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Measures cold start by launching the visualizer in fresh JVMs, one per run:
+//
+//   java StartupHarness [--runs 10] [--panel "Algorithm Visualizer"] [--budget-ms 1000]
+//                       [--archive app.jsa] [--jvm-option -Xmx256m ...]
+//
+// Each run reports the time from launching the JVM to main, to the first painted frame
+// and, for the Algorithm Visualizer, to the first played step of a quick sort. Without a
+// display the panels are painted into an offscreen image instead of a window.
+//
+// With --archive the runs use an AppCDS archive of the classes startup loads, which needs
+// the classes packaged in a jar (see README). If the file does not exist a training run
+// creates it first, and the runs without the archive are measured too for comparison.
+// The harness exits with status 1 when the median time to first frame is over the
+// budget, so a build can fail on a startup regression.
+public class StartupHarness {
+    private static final String[] METRICS = { "main", "frame", "step" };
+
+    public static void main(String[] args) throws Exception {
+        int runs = 10;
+        String panel = MainVisualizer.VISUALIZERS[0];
+        long budgetMillis = 1000;
+        Path archive = null;
+        String child = null;
+        List<String> jvmOptions = new ArrayList<>();
+        for (int i = 0; i < args.length; i += 2) {
+            String value = i + 1 < args.length ? args[i + 1] : "";
+            switch (args[i]) {
+                case "--runs":
+                    runs = Integer.parseInt(value);
+                    break;
+                case "--panel":
+                    panel = value;
+                    break;
+                case "--budget-ms":
+                    budgetMillis = Long.parseLong(value);
+                    break;
+                case "--archive":
+                    archive = Paths.get(value).toAbsolutePath();
+                    break;
+                case "--jvm-option":
+                    jvmOptions.add(value);
+                    break;
+                case "--child":
+                    child = value;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        if (!Arrays.asList(MainVisualizer.VISUALIZERS).contains(child != null ? child : panel)) {
+            System.err.println("usage: java StartupHarness [--runs N] [--panel name] [--budget-ms N]"
+                    + " [--archive file.jsa] [--jvm-option option]...");
+            System.err.println("panels: " + String.join(", ", MainVisualizer.VISUALIZERS));
+            System.exit(2);
+        }
+        if (child != null) {
+            measure(child);
+            return;
+        }
+
+        System.out.printf("panel %s, %d runs, budget %d ms to first frame%n", panel, runs, budgetMillis);
+        List<String> measured = jvmOptions;
+        if (archive != null) {
+            if (!Files.exists(archive)) {
+                List<String> training = new ArrayList<>(jvmOptions);
+                training.add("-XX:ArchiveClassesAtExit=" + archive);
+                launch(training, panel);
+                System.out.println("created " + archive);
+            }
+            report("without archive", jvmOptions, panel, runs);
+            measured = new ArrayList<>(jvmOptions);
+            measured.add("-XX:SharedArchiveFile=" + archive);
+        }
+        long medianFrame = report(archive == null ? "runs" : "with archive", measured, panel, runs);
+        if (medianFrame > budgetMillis) {
+            System.out.printf("over budget: median first frame %d ms > %d ms%n", medianFrame, budgetMillis);
+            System.exit(1);
+        }
+    }
+
+    // Launches the runs and prints each metric's median, min and max. Returns the median first frame.
+    private static long report(String label, List<String> jvmOptions, String panel, int runs)
+            throws IOException, InterruptedException {
+        Map<String, long[]> times = new HashMap<>();
+        for (String metric : METRICS) {
+            times.put(metric, new long[runs]);
+        }
+        for (int r = 0; r < runs; r++) {
+            Map<String, Long> run = launch(jvmOptions, panel);
+            for (String metric : METRICS) {
+                times.get(metric)[r] = run.getOrDefault(metric, -1L);
+            }
+        }
+        System.out.println(label + ":");
+        for (String metric : METRICS) {
+            long[] values = times.get(metric);
+            Arrays.sort(values);
+            if (values[0] < 0) {
+                System.out.printf("  %-6s n/a%n", metric);
+            } else {
+                System.out.printf("  %-6s median %5d ms   min %5d ms   max %5d ms%n", metric, values[runs / 2],
+                        values[0], values[runs - 1]);
+            }
+        }
+        return times.get("frame")[runs / 2];
+    }
+
+    // Runs one child JVM and returns its metrics in milliseconds since launch.
+    private static Map<String, Long> launch(List<String> jvmOptions, String panel)
+            throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(jvmOptions);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        // The launch time goes in last so nothing else runs between reading the clock and starting the JVM.
+        command.add("-Dstartup.launched=" + System.currentTimeMillis());
+        command.add(StartupHarness.class.getName());
+        command.add("--child");
+        command.add(panel);
+        Process process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        Map<String, Long> metrics = new HashMap<>();
+        try (BufferedReader in = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            for (String line; (line = in.readLine()) != null;) {
+                int equals = line.indexOf('=');
+                // The JVM can print its own diagnostics to standard output too.
+                if (equals > 0 && Arrays.asList(METRICS).contains(line.substring(0, equals))) {
+                    metrics.put(line.substring(0, equals), Long.parseLong(line.substring(equals + 1)));
+                }
+            }
+        }
+        if (process.waitFor() != 0) {
+            throw new IOException("Startup run failed with exit status " + process.exitValue());
+        }
+        return metrics;
+    }
+
+    // Child side: opens the panel the way a user would and prints key=value lines.
+    private static void measure(String panel) throws Exception {
+        long mainNanos = System.nanoTime();
+        long launchToMain = System.currentTimeMillis() - Long.getLong("startup.launched", System.currentTimeMillis());
+        System.out.println("main=" + launchToMain);
+
+        long[] times = MainVisualizer.measureStartup(panel);
+        if (times[0] >= 0) {
+            System.out.println("frame=" + (launchToMain + (times[0] - mainNanos) / 1_000_000));
+        }
+        if (times[1] >= 0) {
+            System.out.println("step=" + (launchToMain + (times[1] - mainNanos) / 1_000_000));
+        }
+        System.out.flush();
+        // Swing and the warm-up keep threads alive, and a training run writes its archive on exit.
+        System.exit(0);
+    }
+}
@@ -0,0 +1,383 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Seekable on-disk form of an OperationTrace. The file is a run of segments, each a
+// keyframe (the array, owner tags and operation counts at that step) followed by up to
+// keyframeInterval encoded events, then an index of segment offsets at the end:
+//
+//   header   magic, version, value count, keyframe interval                (int32 LE)
+//   segment  comparisons, swaps, writes (int64), has owners (int32), values[, owners]
+//            events...
+//   index    segment count, segment offsets (int64), event count, truncated flag
+//   trailer  index offset (int64)
+//
+// An event is an op byte followed by zigzag varints. The first index is a delta from
+// the previous event's first index and rides in the op byte's top five bits when it
+// is small; compares and swaps store the second index relative to the first, writes
+// store the new value relative to the last written one and the old value relative
+// to the new one, so every event can be undone. Deltas restart at each keyframe, so
+// decoding can begin at any segment.
+//
+// An opened file is mapped in windows of whole segments and holds no events in the
+// heap; seeking decodes one keyframe and at most one segment of events.
+final class TraceFile {
+    private static final int MAGIC = 0x43525441; // "ATRC" little-endian
+    private static final int VERSION = 1;
+    private static final int MIN_KEYFRAME_INTERVAL = 1 << 16;
+    private static final int MAX_KEYFRAME_INTERVAL = 1 << 24;
+    private static final int HEADER_BYTES = 16;
+    private static final int KEYFRAME_HEADER_BYTES = 28;
+    private static final int SMALL_DELTA = 31;
+    private static final long WINDOW = 1L << 30;
+    // Event positions are ints throughout playback.
+    static final long MAX_EVENTS = Integer.MAX_VALUE - 8;
+
+    private final int valueCount;
+    private final int interval;
+    private final int length;
+    private final boolean truncated;
+    private final long[] offsets;
+    private final MappedByteBuffer[] windows;
+    private final long[] windowStarts;
+    private final int[] segmentWindows;
+
+    private TraceFile(int valueCount, int interval, int length, boolean truncated, long[] offsets,
+            MappedByteBuffer[] windows, long[] windowStarts, int[] segmentWindows) {
+        this.valueCount = valueCount;
+        this.interval = interval;
+        this.length = length;
+        this.truncated = truncated;
+        this.offsets = offsets;
+        this.windows = windows;
+        this.windowStarts = windowStarts;
+        this.segmentWindows = segmentWindows;
+    }
+
+    // Keyframes every 4n events keep their cost near one byte per event, while a seek
+    // decodes at most one interval past the keyframe.
+    static int keyframeInterval(int valueCount) {
+        return (int) Math.max(MIN_KEYFRAME_INTERVAL, Math.min(MAX_KEYFRAME_INTERVAL, 4L * valueCount));
+    }
+
+    public static TraceFile open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES + 8) {
+                throw new IOException("Not a trace file");
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Not a trace file");
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported trace file version " + version);
+            }
+            int valueCount = header.getInt();
+            int interval = header.getInt();
+            long indexOffset = channel.map(FileChannel.MapMode.READ_ONLY, size - 8, 8)
+                    .order(ByteOrder.LITTLE_ENDIAN).getLong();
+            if (indexOffset < HEADER_BYTES || indexOffset > size - 8) {
+                throw new IOException("Trace file is incomplete");
+            }
+            ByteBuffer index = channel.map(FileChannel.MapMode.READ_ONLY, indexOffset, size - 8 - indexOffset)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            int segments = index.getInt();
+            long[] offsets = new long[segments + 1];
+            for (int k = 0; k < segments; k++) {
+                offsets[k] = index.getLong();
+            }
+            offsets[segments] = indexOffset;
+            int length = index.getInt();
+            boolean truncated = index.getInt() != 0;
+
+            // Group whole segments into windows of up to WINDOW bytes so files over 2 GB still map.
+            int[] segmentWindows = new int[segments];
+            long[] starts = new long[segments];
+            long[] ends = new long[segments];
+            int windowCount = 0;
+            for (int k = 0; k < segments; k++) {
+                if (offsets[k + 1] - offsets[k] > Integer.MAX_VALUE) {
+                    throw new IOException("Trace segment " + k + " is too large to map");
+                }
+                if (windowCount == 0 || offsets[k + 1] - starts[windowCount - 1] > WINDOW) {
+                    starts[windowCount++] = offsets[k];
+                }
+                ends[windowCount - 1] = offsets[k + 1];
+                segmentWindows[k] = windowCount - 1;
+            }
+            MappedByteBuffer[] windows = new MappedByteBuffer[windowCount];
+            for (int w = 0; w < windowCount; w++) {
+                windows[w] = channel.map(FileChannel.MapMode.READ_ONLY, starts[w], ends[w] - starts[w]);
+            }
+            return new TraceFile(valueCount, interval, length, truncated, offsets, windows,
+                    java.util.Arrays.copyOf(starts, windowCount), segmentWindows);
+        }
+    }
+
+    // Saves a trace recorded in memory.
+    public static void write(OperationTrace trace, Path path) throws IOException {
+        try (Writer writer = new Writer(path, trace.initialState())) {
+            for (int event = 0; event < trace.size(); event++) {
+                writer.append(trace.op(event), trace.first(event), trace.second(event), trace.third(event));
+            }
+            writer.setTruncated(trace.isTruncated());
+        }
+    }
+
+    public int valueCount() {
+        return valueCount;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    public int keyframeInterval() {
+        return interval;
+    }
+
+    public int keyframeCount() {
+        return offsets.length - 1;
+    }
+
+    // Copies the array at keyframe k (step k * keyframeInterval) into state and returns
+    // its owner tags, or null if no owner event came before it. counts receives the
+    // comparisons, swaps and writes up to that step.
+    int[] readKeyframe(int k, int[] state, long[] counts) {
+        ByteBuffer in = segment(k);
+        counts[0] = in.getLong();
+        counts[1] = in.getLong();
+        counts[2] = in.getLong();
+        boolean hasOwners = in.getInt() != 0;
+        in.asIntBuffer().get(state, 0, valueCount);
+        if (!hasOwners) {
+            return null;
+        }
+        int[] owners = new int[valueCount];
+        in.position(in.position() + valueCount * 4);
+        in.asIntBuffer().get(owners);
+        return owners;
+    }
+
+    // Decodes the events of segment k into an in-memory trace indexed from 0.
+    OperationTrace readEvents(int k) {
+        ByteBuffer in = segment(k);
+        boolean hasOwners = in.getInt(in.position() + KEYFRAME_HEADER_BYTES - 4) != 0;
+        in.position(in.position() + KEYFRAME_HEADER_BYTES + valueCount * 4 * (hasOwners ? 2 : 1));
+        int count = (int) Math.min(interval, length - (long) k * interval);
+        OperationTrace events = new OperationTrace(new int[0], count);
+        int first = 0, value = 0;
+        for (int event = 0; event < count; event++) {
+            int header = in.get() & 0xFF;
+            int op = header & 7;
+            int delta = header >>> 3;
+            first += unzigzag(delta == SMALL_DELTA ? readVarint(in) : delta);
+            switch (op) {
+                case OperationTrace.COMPARE:
+                    events.compare(first, first + unzigzag(readVarint(in)));
+                    break;
+                case OperationTrace.SWAP:
+                    events.swap(first, first + unzigzag(readVarint(in)));
+                    break;
+                case OperationTrace.WRITE:
+                    value += unzigzag(readVarint(in));
+                    events.write(first, value, value + unzigzag(readVarint(in)));
+                    break;
+                default:
+                    events.owner(first, first + readVarint(in), unzigzag(readVarint(in)));
+                    break;
+            }
+        }
+        return events;
+    }
+
+    // Segment k positioned at its keyframe, as a private view safe to read from any thread.
+    private ByteBuffer segment(int k) {
+        int w = segmentWindows[k];
+        ByteBuffer in = windows[w].duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        in.position((int) (offsets[k] - windowStarts[w]));
+        in.limit((int) (offsets[k + 1] - windowStarts[w]));
+        return in;
+    }
+
+    private static int readVarint(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0;; shift += 7) {
+            int b = in.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    static void putVarint(ByteBuffer out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.put((byte) (value | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    static int zigzag(int value) {
+        return value << 1 ^ value >> 31;
+    }
+
+    private static int unzigzag(int value) {
+        return value >>> 1 ^ -(value & 1);
+    }
+
+    // Streams events to a trace file as they happen, keeping only the current array and
+    // owner tags for the next keyframe. Fed by an OperationTrace created over it.
+    static final class Writer implements AutoCloseable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+        private final int[] state;
+        private int[] owners;
+        private final int interval;
+        private long[] offsets = new long[64];
+        private int segments;
+        private int length;
+        private boolean truncated;
+        private long comparisons, swaps, writes;
+        private int lastFirst, lastValue;
+
+        public Writer(Path path, int[] initial) throws IOException {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            state = initial.clone();
+            interval = keyframeInterval(state.length);
+            ensure(HEADER_BYTES);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(state.length).putInt(interval);
+        }
+
+        void append(int op, int first, int second, int third) {
+            try {
+                if (length % interval == 0) {
+                    keyframe();
+                }
+                ensure(16);
+                int delta = zigzag(first - lastFirst);
+                lastFirst = first;
+                buffer.put((byte) (op | Math.min(delta, SMALL_DELTA) << 3));
+                if (delta >= SMALL_DELTA) {
+                    putVarint(delta);
+                }
+                switch (op) {
+                    case OperationTrace.COMPARE:
+                        comparisons++;
+                        putVarint(zigzag(second - first));
+                        break;
+                    case OperationTrace.SWAP:
+                        swaps++;
+                        putVarint(zigzag(second - first));
+                        int temp = state[first];
+                        state[first] = state[second];
+                        state[second] = temp;
+                        break;
+                    case OperationTrace.WRITE:
+                        writes++;
+                        putVarint(zigzag(second - lastValue));
+                        putVarint(zigzag(third - second));
+                        lastValue = second;
+                        state[first] = second;
+                        break;
+                    case OperationTrace.OWNER:
+                        putVarint(second - first);
+                        putVarint(zigzag(third));
+                        if (owners == null) {
+                            owners = new int[state.length];
+                        }
+                        java.util.Arrays.fill(owners, first, second, third + 1);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown trace op " + op);
+                }
+                length++;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        void setTruncated(boolean truncated) {
+            this.truncated = truncated;
+        }
+
+        private void keyframe() throws IOException {
+            if (segments == offsets.length) {
+                offsets = java.util.Arrays.copyOf(offsets, segments * 2);
+            }
+            offsets[segments++] = channel.position() + buffer.position();
+            ensure(KEYFRAME_HEADER_BYTES);
+            buffer.putLong(comparisons).putLong(swaps).putLong(writes).putInt(owners == null ? 0 : 1);
+            putInts(state);
+            if (owners != null) {
+                putInts(owners);
+            }
+            lastFirst = 0;
+            lastValue = 0;
+        }
+
+        private void putInts(int[] values) throws IOException {
+            for (int at = 0; at < values.length;) {
+                ensure(4);
+                int count = Math.min(values.length - at, buffer.remaining() / 4);
+                buffer.asIntBuffer().put(values, at, count);
+                buffer.position(buffer.position() + count * 4);
+                at += count;
+            }
+        }
+
+        private void putVarint(int value) {
+            TraceFile.putVarint(buffer, value);
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        // Writes the segment index; a trace with no events still gets its initial keyframe.
+        @Override
+        public void close() throws IOException {
+            try {
+                if (segments == 0) {
+                    keyframe();
+                }
+                long indexOffset = channel.position() + buffer.position();
+                ensure(4);
+                buffer.putInt(segments);
+                for (int k = 0; k < segments; k++) {
+                    ensure(8);
+                    buffer.putLong(offsets[k]);
+                }
+                ensure(16);
+                buffer.putInt(length).putInt(truncated ? 1 : 0).putLong(indexOffset);
+                flush();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,213 @@
+import java.util.function.IntConsumer;
+
+// Replays an OperationTrace over a copy of its initial array. Writes keep the
+// value they replaced, so every event can be undone and playback can run both ways.
+// A player over a TraceFile keeps one decoded segment of events and jumps through
+// keyframes for long seeks, so no seek replays more than one keyframe interval.
+final class TracePlayer {
+    private final TraceFile file;
+    // The whole trace, or the file segment holding events [base, base + trace.size()).
+    private OperationTrace trace;
+    private int base;
+    private final int[] state;
+    private int position;
+    private int[] owners;
+    private long comparisons, swaps, writes;
+    private IntConsumer changeListener = index -> {
+    };
+
+    public TracePlayer(OperationTrace trace) {
+        this.file = null;
+        this.trace = trace;
+        this.state = trace.initialState();
+    }
+
+    public TracePlayer(TraceFile file) {
+        this.file = file;
+        this.state = new int[file.valueCount()];
+        this.trace = file.readEvents(0);
+        restore(0);
+    }
+
+    // A new player over the same recording, at step 0.
+    public TracePlayer copy() {
+        return file != null ? new TracePlayer(file) : new TracePlayer(trace);
+    }
+
+    // The recording in memory, or null for a player over a file.
+    public OperationTrace trace() {
+        return file == null ? trace : null;
+    }
+
+    public int[] state() {
+        return state;
+    }
+
+    // Called with every index whose value changes during playback.
+    public void setChangeListener(IntConsumer changeListener) {
+        this.changeListener = changeListener;
+    }
+
+    // Worker that last wrote each index plus one, or null if the trace has no owner events.
+    public int[] owners() {
+        return owners;
+    }
+
+    // Operation counts up to the current position.
+    public long comparisons() {
+        return comparisons;
+    }
+
+    public long swaps() {
+        return swaps;
+    }
+
+    public long writes() {
+        return writes;
+    }
+
+    public int position() {
+        return position;
+    }
+
+    public int length() {
+        return file != null ? file.length() : trace.size();
+    }
+
+    public boolean isAtEnd() {
+        return position == length();
+    }
+
+    public boolean stepForward() {
+        if (position == length()) {
+            return false;
+        }
+        apply(position++);
+        return true;
+    }
+
+    public boolean stepBackward() {
+        if (position == 0) {
+            return false;
+        }
+        undo(--position);
+        return true;
+    }
+
+    public void seek(int target) {
+        target = Math.max(0, Math.min(target, length()));
+        if (file != null && Math.abs(target - position) > file.keyframeInterval()) {
+            restore(Math.min(target / file.keyframeInterval(), file.keyframeCount() - 1));
+        }
+        while (position < target) {
+            apply(position++);
+        }
+        while (position > target) {
+            undo(--position);
+        }
+    }
+
+    // Indices touched by the most recently applied event, or -1.
+    public int highlightFirst() {
+        if (position == 0 || op(position - 1) == OperationTrace.OWNER) {
+            return -1;
+        }
+        return trace.first(position - 1 - base);
+    }
+
+    public int highlightSecond() {
+        if (position == 0 || op(position - 1) >= OperationTrace.WRITE) {
+            return -1;
+        }
+        return trace.second(position - 1 - base);
+    }
+
+    // Jumps to keyframe k, replacing the array, owners and counts.
+    private void restore(int k) {
+        long[] counts = new long[3];
+        owners = file.readKeyframe(k, state, counts);
+        comparisons = counts[0];
+        swaps = counts[1];
+        writes = counts[2];
+        position = k * file.keyframeInterval();
+        for (int i = 0; i < state.length; i++) {
+            changeListener.accept(i);
+        }
+    }
+
+    // Op of the given event, first decoding its segment if the player is over a file.
+    private int op(int event) {
+        if (file != null && (event < base || event >= base + trace.size())) {
+            int k = event / file.keyframeInterval();
+            trace = file.readEvents(k);
+            base = k * file.keyframeInterval();
+        }
+        return trace.op(event - base);
+    }
+
+    private void apply(int event) {
+        int op = op(event);
+        event -= base;
+        switch (op) {
+            case OperationTrace.COMPARE:
+                comparisons++;
+                break;
+            case OperationTrace.SWAP:
+                swaps++;
+                swap(trace.first(event), trace.second(event));
+                break;
+            case OperationTrace.WRITE:
+                writes++;
+                state[trace.first(event)] = trace.second(event);
+                changeListener.accept(trace.first(event));
+                break;
+            case OperationTrace.OWNER:
+                setOwner(trace.first(event), trace.second(event), trace.third(event) + 1);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void undo(int event) {
+        int op = op(event);
+        event -= base;
+        switch (op) {
+            case OperationTrace.COMPARE:
+                comparisons--;
+                break;
+            case OperationTrace.SWAP:
+                swaps--;
+                swap(trace.first(event), trace.second(event));
+                break;
+            case OperationTrace.WRITE:
+                writes--;
+                state[trace.first(event)] = trace.third(event);
+                changeListener.accept(trace.first(event));
+                break;
+            case OperationTrace.OWNER:
+                setOwner(trace.first(event), trace.second(event), 0);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void setOwner(int from, int to, int owner) {
+        if (owners == null) {
+            owners = new int[state.length];
+        }
+        for (int i = from; i < to; i++) {
+            owners[i] = owner;
+            changeListener.accept(i);
+        }
+    }
+
+    private void swap(int i, int j) {
+        int temp = state[i];
+        state[i] = state[j];
+        state[j] = temp;
+        changeListener.accept(i);
+        changeListener.accept(j);
+    }
+}
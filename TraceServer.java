@@ -0,0 +1,280 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Streams live visualizer sessions to remote viewers over the JDK HTTP server:
+//
+//   GET /runs                 JSON list of sessions
+//   GET /runs/<id>/frames     binary frames, each prefixed with its int32 LE length
+//   GET /runs/<id>/events     the same frames base64 encoded as server-sent events
+//
+// A session's producer publishes each frame's changed indices and values on its own
+// thread. The frame is encoded once and offered to every viewer's bounded queue, and
+// each viewer's own thread drains its queue to the socket. A viewer whose queue is
+// full has its backlog dropped and replaced by a keyframe of the current state, so a
+// slow client skips frames but never falls behind or holds up the others.
+//
+// A frame is a type byte, then position, length and the two highlighted indices
+// (int32 LE). A keyframe adds the state size and every value; a delta adds a change
+// count and zigzag varint (index delta, value delta) pairs.
+final class TraceServer {
+    static final int KEYFRAME = 0, DELTA = 1;
+    private static final int QUEUE_FRAMES = 64;
+    private static final int HEADER_BYTES = 17;
+    private static final long HEARTBEAT_SECONDS = 15;
+    private static final CopyOnWriteArrayList<Session> SESSIONS = new CopyOnWriteArrayList<>();
+    private static final AtomicInteger SESSION_IDS = new AtomicInteger();
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    private final HttpServer server;
+    private final ExecutorService viewers;
+
+    // Every viewer holds a thread while it is connected, so the pool grows with the audience.
+    private TraceServer(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        viewers = Executors.newCachedThreadPool(task -> {
+            Thread thread = new Thread(task, "trace-viewer-" + THREAD_COUNT.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(viewers);
+        server.createContext("/runs", this::handle);
+        server.start();
+    }
+
+    public static TraceServer start(int port) throws IOException {
+        return new TraceServer(port);
+    }
+
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    public void stop() {
+        server.stop(0);
+        viewers.shutdownNow();
+    }
+
+    // Sessions live for the life of the process; one without viewers only keeps its state current.
+    static Session register(String name) {
+        Session session = new Session(SESSION_IDS.getAndIncrement(), name);
+        SESSIONS.add(session);
+        return session;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String[] parts = exchange.getRequestURI().getPath().split("/");
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                send(exchange, 405, "text/plain", "GET only\n");
+            } else if (parts.length == 2) {
+                send(exchange, 200, "application/json", listSessions());
+            } else if (parts.length == 4 && ("frames".equals(parts[3]) || "events".equals(parts[3]))) {
+                Session session = find(parts[2]);
+                if (session == null) {
+                    send(exchange, 404, "text/plain", "No such run\n");
+                } else {
+                    stream(exchange, session, "events".equals(parts[3]));
+                }
+            } else {
+                send(exchange, 404, "text/plain", "Not found\n");
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static Session find(String id) {
+        for (Session session : SESSIONS) {
+            if (Integer.toString(session.id).equals(id)) {
+                return session;
+            }
+        }
+        return null;
+    }
+
+    private static String listSessions() {
+        StringBuilder json = new StringBuilder("[");
+        for (Session session : SESSIONS) {
+            json.append(json.length() > 1 ? ",\n " : "\n ").append(String.format(
+                    "{\"id\": %d, \"name\": \"%s\", \"size\": %d, \"viewers\": %d, \"framesDropped\": %d}",
+                    session.id, session.name, session.size(), session.viewers.size(), session.dropped.get()));
+        }
+        return json.append("\n]\n").toString();
+    }
+
+    private static void send(HttpExchange exchange, int status, String type, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", type);
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    // Runs on the viewer's thread until the client disconnects or the server stops.
+    private static void stream(HttpExchange exchange, Session session, boolean events) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", events ? "text/event-stream" : "application/octet-stream");
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        exchange.sendResponseHeaders(200, 0);
+        Viewer viewer = session.subscribe();
+        byte[] length = new byte[4];
+        Base64.Encoder base64 = Base64.getEncoder();
+        try (OutputStream out = new BufferedOutputStream(exchange.getResponseBody(), 1 << 16)) {
+            while (true) {
+                byte[] frame = viewer.queue.poll(HEARTBEAT_SECONDS, TimeUnit.SECONDS);
+                if (frame == null) {
+                    // Writing something is the only way to notice a client that went away.
+                    out.write(events ? ": ping\n\n".getBytes(StandardCharsets.US_ASCII) : length(length, 0));
+                }
+                // Whatever queued up meanwhile goes out in the same flush.
+                for (; frame != null; frame = viewer.queue.poll()) {
+                    if (events) {
+                        out.write((frame[0] == KEYFRAME ? "event: keyframe\ndata: " : "event: delta\ndata: ")
+                                .getBytes(StandardCharsets.US_ASCII));
+                        out.write(base64.encode(frame));
+                        out.write('\n');
+                        out.write('\n');
+                    } else {
+                        out.write(length(length, frame.length));
+                        out.write(frame);
+                    }
+                }
+                out.flush();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            // The viewer disconnected.
+        } finally {
+            session.viewers.remove(viewer);
+        }
+    }
+
+    private static byte[] length(byte[] bytes, int value) {
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).putInt(value);
+        return bytes;
+    }
+
+    private static final class Viewer {
+        final ArrayBlockingQueue<byte[]> queue = new ArrayBlockingQueue<>(QUEUE_FRAMES);
+        boolean resync;
+    }
+
+    // One visualizer panel's live state. The producer calls reset and publish from a
+    // single thread; viewers subscribe from theirs.
+    static final class Session {
+        private final int id;
+        private final String name;
+        private final CopyOnWriteArrayList<Viewer> viewers = new CopyOnWriteArrayList<>();
+        private final AtomicLong dropped = new AtomicLong();
+        private int[] state = new int[0];
+        private int position, length, first = -1, second = -1;
+        private boolean resetPending;
+        private ByteBuffer buffer = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+
+        private Session(int id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+
+        public int id() {
+            return id;
+        }
+
+        synchronized int size() {
+            return state.length;
+        }
+
+        // Replaces the whole state; the next publish sends a keyframe instead of a delta.
+        synchronized void reset(int[] values, int size) {
+            state = state.length == size ? state : new int[size];
+            System.arraycopy(values, 0, state, 0, size);
+            resetPending = true;
+        }
+
+        // Applies the changes since the last frame and sends them to every viewer.
+        synchronized void publish(int position, int length, int first, int second, int[] indices, int[] values,
+                int count) {
+            if (!resetPending && count == 0 && position == this.position && length == this.length
+                    && first == this.first && second == this.second) {
+                return;
+            }
+            for (int i = 0; i < count; i++) {
+                state[indices[i]] = values[i];
+            }
+            this.position = position;
+            this.length = length;
+            this.first = first;
+            this.second = second;
+            boolean keyframeAll = resetPending;
+            resetPending = false;
+            if (viewers.isEmpty()) {
+                return;
+            }
+            byte[] keyframe = keyframeAll ? keyframe() : null;
+            byte[] delta = keyframeAll ? null : delta(indices, values, count);
+            for (Viewer viewer : viewers) {
+                if (!keyframeAll && !viewer.resync && viewer.queue.offer(delta)) {
+                    continue;
+                }
+                if (!keyframeAll && !viewer.resync) {
+                    dropped.addAndGet(viewer.queue.size() + 1);
+                }
+                // The keyframe supersedes everything still queued.
+                viewer.queue.clear();
+                keyframe = keyframe != null ? keyframe : keyframe();
+                viewer.resync = !viewer.queue.offer(keyframe);
+            }
+        }
+
+        private synchronized Viewer subscribe() {
+            Viewer viewer = new Viewer();
+            viewer.queue.offer(keyframe());
+            viewers.add(viewer);
+            return viewer;
+        }
+
+        private byte[] keyframe() {
+            ByteBuffer out = header(KEYFRAME, 4 + 4 * state.length);
+            out.putInt(state.length);
+            out.asIntBuffer().put(state);
+            out.position(out.position() + 4 * state.length);
+            return Arrays.copyOf(out.array(), out.position());
+        }
+
+        private byte[] delta(int[] indices, int[] values, int count) {
+            ByteBuffer out = header(DELTA, 4 + 10 * count);
+            out.putInt(count);
+            int index = 0, value = 0;
+            for (int i = 0; i < count; i++) {
+                TraceFile.putVarint(out, TraceFile.zigzag(indices[i] - index));
+                TraceFile.putVarint(out, TraceFile.zigzag(values[i] - value));
+                index = indices[i];
+                value = values[i];
+            }
+            return Arrays.copyOf(out.array(), out.position());
+        }
+
+        private ByteBuffer header(int type, int body) {
+            if (buffer.capacity() < HEADER_BYTES + body) {
+                buffer = ByteBuffer.allocate(HEADER_BYTES + body).order(ByteOrder.LITTLE_ENDIAN);
+            }
+            buffer.clear();
+            return buffer.put((byte) type).putInt(position).putInt(length).putInt(first).putInt(second);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+// Array view the sorts run against. With a null trace every call is a plain
+// array access plus a counter bump (plain long fields, no locks or boxing);
+// otherwise each compare, swap and write is also appended to the trace.
+final class TracedArray {
+    private final int[] data;
+    private final OperationTrace trace;
+    private long comparisons, swaps, reads, writes;
+
+    public TracedArray(int[] data, OperationTrace trace) {
+        this.data = data;
+        this.trace = trace;
+    }
+
+    public int length() {
+        return data.length;
+    }
+
+    public int get(int i) {
+        reads++;
+        return data[i];
+    }
+
+    public void set(int i, int value) {
+        writes++;
+        if (trace != null) {
+            trace.write(i, value, data[i]);
+        }
+        data[i] = value;
+    }
+
+    public void swap(int i, int j) {
+        swaps++;
+        reads += 2;
+        if (trace != null) {
+            trace.swap(i, j);
+        }
+        int temp = data[i];
+        data[i] = data[j];
+        data[j] = temp;
+    }
+
+    public int compare(int i, int j) {
+        comparisons++;
+        reads += 2;
+        if (trace != null) {
+            trace.compare(i, j);
+        }
+        return Integer.compare(data[i], data[j]);
+    }
+
+    // Compares values already read out of the array; i and j are the positions
+    // to highlight for them.
+    public int compareValues(int a, int b, int i, int j) {
+        comparisons++;
+        if (trace != null) {
+            trace.compare(i, j);
+        }
+        return Integer.compare(a, b);
+    }
+
+    // Tags [from, to) for playback colouring, e.g. with a pass or recursion depth.
+    public void mark(int from, int to, int tag) {
+        if (trace != null && from < to) {
+            trace.owner(from, to, tag);
+        }
+    }
+
+    // For sorts that work on array() directly and count their own operations.
+    public void addCounts(long comparisons, long swaps, long reads, long writes) {
+        this.comparisons += comparisons;
+        this.swaps += swaps;
+        this.reads += reads;
+        this.writes += writes;
+    }
+
+    public int[] array() {
+        return data;
+    }
+
+    public OperationTrace trace() {
+        return trace;
+    }
+
+    public long comparisons() {
+        return comparisons;
+    }
+
+    public long swaps() {
+        return swaps;
+    }
+
+    public long reads() {
+        return reads;
+    }
+
+    public long writes() {
+        return writes;
+    }
+}
@@ -0,0 +1,86 @@
+import java.awt.EventQueue;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+// Whether the UI keeps up: how late the EDT runs a posted event, how long the sort and
+// graph panels take to paint, and the FrameClock's dropped frames and pending repaints.
+// start() registers everything as MBeans under "AlgorithmVisualizer:*", so jconsole or
+// any JMX client can watch a slow session without a profiler attached.
+final class UiMetrics {
+    static final LatencyHistogram EDT_LAG = new LatencyHistogram();
+    static final LatencyHistogram SORT_PAINT = new LatencyHistogram();
+    static final LatencyHistogram GRAPH_PAINT = new LatencyHistogram();
+    private static final long PROBE_MILLIS = 50;
+    private static final AtomicBoolean STARTED = new AtomicBoolean();
+    // Only one probe is in the queue at a time, so a long stall is one large sample
+    // rather than a burst of decreasing ones.
+    private static final AtomicBoolean PROBE_PENDING = new AtomicBoolean();
+
+    private UiMetrics() {
+    }
+
+    // Starts the EDT lag probe and registers the MBeans. Safe to call more than once;
+    // the registration runs on the probe thread, off the startup path.
+    static void start() {
+        if (!STARTED.compareAndSet(false, true)) {
+            return;
+        }
+        ScheduledExecutorService probe = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "edt-lag-probe");
+            thread.setDaemon(true);
+            return thread;
+        });
+        probe.execute(UiMetrics::register);
+        probe.scheduleAtFixedRate(UiMetrics::probe, PROBE_MILLIS, PROBE_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private static void probe() {
+        if (PROBE_PENDING.compareAndSet(false, true)) {
+            long posted = System.nanoTime();
+            EventQueue.invokeLater(() -> {
+                EDT_LAG.record(System.nanoTime() - posted);
+                PROBE_PENDING.set(false);
+            });
+        }
+    }
+
+    private static void register() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.registerMBean(new StandardMBean(EDT_LAG, LatencyHistogramMBean.class),
+                    new ObjectName("AlgorithmVisualizer:type=Latency,name=EdtLag"));
+            server.registerMBean(new StandardMBean(SORT_PAINT, LatencyHistogramMBean.class),
+                    new ObjectName("AlgorithmVisualizer:type=Latency,name=SortPaint"));
+            server.registerMBean(new StandardMBean(GRAPH_PAINT, LatencyHistogramMBean.class),
+                    new ObjectName("AlgorithmVisualizer:type=Latency,name=GraphPaint"));
+            server.registerMBean(new StandardMBean(FrameClock.get(), FrameClockMBean.class),
+                    new ObjectName("AlgorithmVisualizer:type=FrameClock"));
+        } catch (JMException e) {
+            System.err.println("Could not register UI metrics: " + e.getMessage());
+        }
+    }
+
+    // The HUD text, one line per measurement.
+    static String[] summary() {
+        FrameClock clock = FrameClock.get();
+        return new String[] {
+                line("EDT lag", EDT_LAG),
+                line("sort paint", SORT_PAINT),
+                line("graph paint", GRAPH_PAINT),
+                String.format("frames %,d, dropped %,d", clock.getFrames(), clock.getDroppedFrames()),
+                String.format("pending repaints %d (max %d)", clock.getPendingRepaintComponents(),
+                        clock.getMaxPendingRepaintComponents()) };
+    }
+
+    private static String line(String name, LatencyHistogram histogram) {
+        return String.format("%-11s p50 %6.2f  p99 %6.2f  max %7.2f ms", name, histogram.getP50Millis(),
+                histogram.getP99Millis(), histogram.getMaxMillis());
+    }
+}
@@ -0,0 +1,103 @@
+import java.util.Arrays;
+
+// Incremental connectivity over int node ids 0..nodeCount-1: union by rank with
+// path compression over primitive arrays, so component count, same-component and
+// cycle queries cost O(alpha(n)) after each added node or edge. Edges are only ever
+// added, never removed, which is what lets the structure stay incremental.
+final class UnionFind {
+    private int[] parent = new int[16];
+    private byte[] rank = new byte[16];
+    private int nodeCount;
+    private int componentCount;
+    // Edges whose ends were already connected; a simple graph has a cycle iff there is one.
+    private long cycleEdges;
+
+    // Builds the components of an existing graph in O(E alpha(n)).
+    public static UnionFind of(Graph graph) {
+        UnionFind components = new UnionFind();
+        components.ensureCapacity(graph.nodeCount());
+        for (int node = 0; node < graph.nodeCount(); node++) {
+            components.addNode();
+        }
+        for (int edge = 0; edge < graph.edgeCount(); edge++) {
+            components.union(graph.edgeSource(edge), graph.edgeTarget(edge));
+        }
+        return components;
+    }
+
+    public void ensureCapacity(int nodes) {
+        if (nodes > parent.length) {
+            parent = Arrays.copyOf(parent, nodes);
+            rank = Arrays.copyOf(rank, nodes);
+        }
+    }
+
+    // Adds a node in a component of its own and returns its id.
+    public int addNode() {
+        if (nodeCount == parent.length) {
+            ensureCapacity(parent.length * 2);
+        }
+        parent[nodeCount] = nodeCount;
+        rank[nodeCount] = 0;
+        componentCount++;
+        return nodeCount++;
+    }
+
+    // Records an edge between a and b. Returns false if they were already connected,
+    // i.e. the edge closes a cycle.
+    public boolean union(int a, int b) {
+        int rootA = find(a), rootB = find(b);
+        if (rootA == rootB) {
+            cycleEdges++;
+            return false;
+        }
+        // Ranks stay below log2(n), so a byte is enough.
+        if (rank[rootA] < rank[rootB]) {
+            parent[rootA] = rootB;
+        } else {
+            parent[rootB] = rootA;
+            if (rank[rootA] == rank[rootB]) {
+                rank[rootA]++;
+            }
+        }
+        componentCount--;
+        return true;
+    }
+
+    // The representative of node's component. Two passes keep it iterative: find the
+    // root, then point every node on the way straight at it.
+    public int find(int node) {
+        int root = node;
+        while (parent[root] != root) {
+            root = parent[root];
+        }
+        while (parent[node] != root) {
+            int next = parent[node];
+            parent[node] = root;
+            node = next;
+        }
+        return root;
+    }
+
+    public boolean connected(int a, int b) {
+        return find(a) == find(b);
+    }
+
+    public int nodeCount() {
+        return nodeCount;
+    }
+
+    public int componentCount() {
+        return componentCount;
+    }
+
+    public boolean hasCycle() {
+        return cycleEdges > 0;
+    }
+
+    public void clear() {
+        nodeCount = 0;
+        componentCount = 0;
+        cycleEdges = 0;
+    }
+}
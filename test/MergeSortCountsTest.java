@@ -0,0 +1,39 @@
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+// Checks that both merge sorts report their work through the TracedArray counters,
+// traced and untraced. No test framework is needed:
+//
+//   javac -d out *.java test/*.java && java -cp out MergeSortCountsTest
+public class MergeSortCountsTest {
+    private static final int[] SIZES = { 2, 3, 100, 10_000, 200_000 };
+
+    public static void main(String[] args) {
+        for (int size : SIZES) {
+            int[] input = new SplittableRandom(size).ints(size).toArray();
+            for (boolean traced : new boolean[] { false, true }) {
+                check("merge", SortAlgorithms::mergeSort, input, traced);
+                check("parallel-merge", ParallelMergeSort::sort, input, traced);
+            }
+        }
+        System.out.println("MergeSortCountsTest passed");
+    }
+
+    private static void check(String name, java.util.function.Consumer<TracedArray> sort, int[] input,
+            boolean traced) {
+        String label = String.format("%s n=%d %s", name, input.length, traced ? "traced" : "untraced");
+        TracedArray array = new TracedArray(input.clone(), traced ? new OperationTrace(input, 1L << 26) : null);
+        sort.accept(array);
+        int[] expected = input.clone();
+        Arrays.sort(expected);
+        if (!Arrays.equals(array.array(), expected)) {
+            throw new AssertionError(label + ": not sorted");
+        }
+        if (array.comparisons() == 0) {
+            throw new AssertionError(label + ": reported 0 comparisons");
+        }
+        if (array.reads() == 0) {
+            throw new AssertionError(label + ": reported 0 reads");
+        }
+    }
+}